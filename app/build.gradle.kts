@@ -1,6 +1,7 @@
 plugins {
     alias(libs.plugins.android.application)
     id("com.google.gms.google-services")
+    id("androidx.baselineprofile")
 }
 
 android {
@@ -19,7 +20,8 @@ android {
 
     buildTypes {
         release {
-            isMinifyEnabled = false
+            isMinifyEnabled = true
+            isShrinkResources = true
             proguardFiles(
                 getDefaultProguardFile("proguard-android-optimize.txt"),
                 "proguard-rules.pro"
@@ -54,4 +56,13 @@ dependencies {
     implementation("com.google.firebase:firebase-auth")
     implementation("com.google.firebase:firebase-database")
     implementation ("com.google.firebase:firebase-messaging")
+
+    implementation("androidx.startup:startup-runtime:1.2.0")
+    implementation("androidx.room:room-runtime:2.6.1")
+    annotationProcessor("androidx.room:room-compiler:2.6.1")
+
+    // Installs the Baseline Profile on sideloaded builds; Play installs it directly
+    implementation("androidx.profileinstaller:profileinstaller:1.4.1")
+    implementation("androidx.tracing:tracing:1.2.0")
+    baselineProfile(project(":macrobenchmark"))
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+# Firebase maps ChatGroup and ChatMessage through reflection on their
+# no-arg constructors, getters and setters.
+-keepclassmembers class com.example.chatapp.model.** {
+    public <init>();
+    public *** get*();
+    public *** is*();
+    public void set*(***);
+}
+-keepattributes Signature,*Annotation*
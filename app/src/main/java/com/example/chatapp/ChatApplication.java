@@ -0,0 +1,37 @@
+package com.example.chatapp;
+
+import android.app.Application;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+
+import androidx.core.content.ContextCompat;
+
+import com.example.chatapp.model.TimeFormatter;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+public class ChatApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // FirebaseDatabase is set up lazily by DatabaseInitializer, everything
+        // not needed for the first frame is started by DeferredStartup
+
+        // Message times are formatted once and cached, drop them when the zone or locale changes
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        filter.addAction(Intent.ACTION_LOCALE_CHANGED);
+        ContextCompat.registerReceiver(this, new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                String zoneId = intent.getStringExtra(Intent.EXTRA_TIMEZONE);
+                TimeZone zone = zoneId != null ? TimeZone.getTimeZone(zoneId) : TimeZone.getDefault();
+                TimeFormatter.reset(Locale.getDefault(), zone);
+            }
+        }, filter, ContextCompat.RECEIVER_NOT_EXPORTED);
+    }
+}
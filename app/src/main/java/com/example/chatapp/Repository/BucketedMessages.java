@@ -0,0 +1,241 @@
+package com.example.chatapp.Repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.chatapp.model.DataLayout;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// One group's messages, read across its day buckets. A page never spans two
+// buckets; it comes back short when its bucket runs out, and `end` tells
+// whether any older (or newer) bucket is left. Empty days are skipped using
+// messageBuckets.
+public class BucketedMessages {
+
+    public interface PageCallback {
+        void onPage(List<DataSnapshot> children, boolean end);
+
+        void onCancelled();
+    }
+
+    private interface BucketCallback {
+        void onBucket(@Nullable String day);
+    }
+
+    // Catch-up reads of a Follower, one page of one bucket at a time
+    private static final int CATCH_UP_PAGE = 100;
+
+    private final DatabaseReference messages;
+    private final DatabaseReference buckets;
+
+    public BucketedMessages(DatabaseReference messages, DatabaseReference buckets) {
+        this.messages = messages;
+        this.buckets = buckets;
+    }
+
+    public void latest(int limit, PageCallback callback) {
+        neighbour(buckets.orderByKey().limitToLast(1), callback, day -> {
+            if (day == null) {
+                callback.onPage(Collections.emptyList(), true);
+            } else {
+                pageBack(day, null, limit, callback);
+            }
+        });
+    }
+
+    public void before(String cursor, int limit, PageCallback callback) {
+        pageBack(DataLayout.bucketOf(cursor), cursor, limit, callback);
+    }
+
+    public void after(String cursor, int limit, PageCallback callback) {
+        pageForward(DataLayout.bucketOf(cursor), cursor, false, limit, callback);
+    }
+
+    // Delivers every message from fromKey on (inclusive or not), across
+    // buckets, including days that start while following. Only today and
+    // later days are listened to; earlier days are read once, page by page,
+    // and handed to the listener as adds, so however far back fromKey is the
+    // follower holds one or two listeners. Edits to those earlier days made
+    // while following are not delivered.
+    public Follower follow(@Nullable String fromKey, boolean inclusive, ChildEventListener listener) {
+        return new Follower(fromKey, inclusive, listener);
+    }
+
+    public class Follower {
+        private final String fromKey;
+        private final boolean inclusive;
+        private final ChildEventListener listener;
+        private final String firstDay;
+        private final String liveDay;
+        private final List<Query> followed = new ArrayList<>();
+        private final Query days;
+        private boolean stopped;
+
+        private final ChildEventListener dayListener = new ChildEventListener() {
+            @Override
+            public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                followDay(snapshot.getKey());
+            }
+
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+
+            }
+
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+
+            }
+
+            @Override
+            public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+
+            }
+        };
+
+        Follower(String fromKey, boolean inclusive, ChildEventListener listener) {
+            this.fromKey = fromKey;
+            this.inclusive = inclusive;
+            this.listener = listener;
+            String today = DataLayout.bucketOf(System.currentTimeMillis());
+            this.firstDay = fromKey == null ? today : DataLayout.bucketOf(fromKey);
+            this.liveDay = firstDay.compareTo(today) > 0 ? firstDay : today;
+            days = buckets.orderByKey().startAt(liveDay);
+            days.addChildEventListener(dayListener);
+            if (firstDay.compareTo(liveDay) < 0) {
+                catchUp(fromKey, inclusive);
+            }
+        }
+
+        public void stop() {
+            stopped = true;
+            days.removeEventListener(dayListener);
+            for (Query query : followed) {
+                query.removeEventListener(listener);
+            }
+            followed.clear();
+        }
+
+        private void followDay(String day) {
+            Query query = messages.child(day).orderByKey();
+            if (fromKey != null && day.equals(firstDay)) {
+                query = inclusive ? query.startAt(fromKey) : query.startAfter(fromKey);
+            }
+            followed.add(query);
+            query.addChildEventListener(listener);
+        }
+
+        // Days before liveDay, up to where the day listeners take over
+        private void catchUp(String cursor, boolean inclusive) {
+            pageForward(DataLayout.bucketOf(cursor), cursor, inclusive, CATCH_UP_PAGE, new PageCallback() {
+                @Override
+                public void onPage(List<DataSnapshot> children, boolean end) {
+                    if (stopped) {
+                        return;
+                    }
+                    String previous = null;
+                    for (DataSnapshot child : children) {
+                        if (DataLayout.bucketOf(child.getKey()).compareTo(liveDay) >= 0) {
+                            return;
+                        }
+                        listener.onChildAdded(child, previous);
+                        previous = child.getKey();
+                    }
+                    if (!end && previous != null) {
+                        catchUp(previous, false);
+                    }
+                }
+
+                @Override
+                public void onCancelled() {
+
+                }
+            });
+        }
+    }
+
+    private void pageBack(String day, @Nullable String cursor, int limit, PageCallback callback) {
+        Query query = messages.child(day).orderByKey();
+        query = cursor == null ? query.limitToLast(limit) : query.endBefore(cursor).limitToLast(limit);
+        read(query, callback, children -> {
+            if (children.size() == limit) {
+                callback.onPage(children, false);
+                return;
+            }
+            neighbour(buckets.orderByKey().endBefore(day).limitToLast(1), callback, previous -> {
+                if (previous == null) {
+                    callback.onPage(children, true);
+                } else if (children.isEmpty()) {
+                    pageBack(previous, null, limit, callback);
+                } else {
+                    callback.onPage(children, false);
+                }
+            });
+        });
+    }
+
+    private void pageForward(String day, @Nullable String cursor, boolean inclusive, int limit,
+                             PageCallback callback) {
+        Query query = messages.child(day).orderByKey();
+        if (cursor != null) {
+            query = inclusive ? query.startAt(cursor) : query.startAfter(cursor);
+        }
+        query = query.limitToFirst(limit);
+        read(query, callback, children -> {
+            if (children.size() == limit) {
+                callback.onPage(children, false);
+                return;
+            }
+            neighbour(buckets.orderByKey().startAfter(day).limitToFirst(1), callback, next -> {
+                if (next == null) {
+                    callback.onPage(children, true);
+                } else if (children.isEmpty()) {
+                    pageForward(next, null, false, limit, callback);
+                } else {
+                    callback.onPage(children, false);
+                }
+            });
+        });
+    }
+
+    private interface ChildrenCallback {
+        void onChildren(List<DataSnapshot> children);
+    }
+
+    private void read(Query query, PageCallback callback, ChildrenCallback onChildren) {
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                List<DataSnapshot> children = new ArrayList<>((int) snapshot.getChildrenCount());
+                for (DataSnapshot child : snapshot.getChildren()) {
+                    children.add(child);
+                }
+                onChildren.onChildren(children);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                callback.onCancelled();
+            }
+        });
+    }
+
+    // The single day a limitToFirst/limitToLast(1) bucket query returns, or null
+    private void neighbour(Query query, PageCallback callback, BucketCallback onBucket) {
+        read(query, callback, children -> onBucket.onBucket(children.isEmpty() ? null : children.get(0).getKey()));
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.chatapp.Repository;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Counts lookups answered from a faster tier (memory, Room) versus those that fell through
+public class CacheStats {
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public void hit() {
+        hits.incrementAndGet();
+    }
+
+    public void miss() {
+        misses.incrementAndGet();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + getHits() + " misses=" + getMisses()
+                + " hitRate=" + String.format("%.2f", getHitRate());
+    }
+}
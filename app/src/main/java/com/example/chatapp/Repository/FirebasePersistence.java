@@ -0,0 +1,28 @@
+package com.example.chatapp.Repository;
+
+import android.content.Context;
+
+import com.example.chatapp.R;
+import com.google.firebase.database.FirebaseDatabase;
+
+public class FirebasePersistence {
+    // Limits accepted by setPersistenceCacheSizeBytes
+    private static final long MIN_CACHE_BYTES = 1024 * 1024;
+    private static final long MAX_CACHE_BYTES = 100 * 1024 * 1024;
+
+    public static void configure(Context context) {
+        configure(context, FirebaseDatabase.getInstance());
+    }
+
+    // Every instance has its own cache; message shards get the same settings
+    public static void configure(Context context, FirebaseDatabase database) {
+        if (!context.getResources().getBoolean(R.bool.firebase_persistence_enabled)) {
+            return;
+        }
+        long cacheBytes = context.getResources().getInteger(R.integer.firebase_cache_size_mb) * 1024L * 1024L;
+        cacheBytes = Math.max(MIN_CACHE_BYTES, Math.min(MAX_CACHE_BYTES, cacheBytes));
+
+        database.setPersistenceEnabled(true);
+        database.setPersistenceCacheSizeBytes(cacheBytes);
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.chatapp.Repository;
+
+import androidx.annotation.NonNull;
+
+import com.example.chatapp.db.MessageStore;
+import com.example.chatapp.model.ChatGroup;
+import com.example.chatapp.model.DataLayout;
+import com.example.chatapp.model.ReadMarker;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Group metadata joined with the user's read markers. Both are one small
+// node each (groups/<id> only holds meta), so unread badges come from two
+// listeners and a subtraction per group, never from the messages themselves.
+public class GroupListLiveData extends ListenerLiveData<List<ChatGroup>> {
+    private final DatabaseReference groupsReference;
+    private final DatabaseReference markersRoot;
+    private final Supplier<String> currentUserId;
+    private final MessageStore store;
+
+    // Latest groups, in display order, and markers by group id
+    private List<ChatGroup> groups = Collections.emptyList();
+    private Map<String, ReadMarker> markers = Collections.emptyMap();
+    private DatabaseReference markersReference;
+
+    private final ValueEventListener listener = new ValueEventListener() {
+        @Override
+        public void onDataChange(@NonNull DataSnapshot snapshot) {
+            List<ChatGroup> groupList = new ArrayList<>();
+            for(DataSnapshot dataSnapshot: snapshot.getChildren()){
+                ChatGroup group = dataSnapshot.child(DataLayout.META).getValue(ChatGroup.class);
+                // No name yet: a message reached the meta before the name
+                // transaction did. The id is not a name, so wait for it.
+                if (group == null || group.getGroupName() == null) {
+                    continue;
+                }
+                groupList.add(group);
+            }
+            // Most recently active groups first
+            Collections.sort(groupList, (a, b) -> Long.compare(b.getLastActivity(), a.getLastActivity()));
+            groups = groupList;
+            publishGroups();
+            store.saveGroups(groupList);
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+
+        }
+    };
+
+    private final ValueEventListener markersListener = new ValueEventListener() {
+        @Override
+        public void onDataChange(@NonNull DataSnapshot snapshot) {
+            Map<String, ReadMarker> markerMap = new HashMap<>();
+            for (DataSnapshot child : snapshot.getChildren()) {
+                ReadMarker marker = child.getValue(ReadMarker.class);
+                if (marker != null) {
+                    markerMap.put(child.getKey(), marker);
+                }
+            }
+            markers = markerMap;
+            publishGroups();
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+
+        }
+    };
+
+    public GroupListLiveData(DatabaseReference groupsReference, DatabaseReference markersRoot,
+                             Supplier<String> currentUserId, MessageStore store) {
+        this.groupsReference = groupsReference;
+        this.markersRoot = markersRoot;
+        this.currentUserId = currentUserId;
+        this.store = store;
+    }
+
+    public ReadMarker getReadMarker(String groupName) {
+        return markers.get(DataLayout.groupId(groupName));
+    }
+
+    @Override
+    protected void onAttach() {
+        // Show the cached list right away, the groups listener replaces it once synced
+        if (getValue() == null) {
+            store.loadGroups(cached -> {
+                if (getValue() == null && !cached.isEmpty()) {
+                    setValue(cached);
+                }
+            });
+        }
+        groupsReference.addValueEventListener(listener);
+
+        String uid = currentUserId.get();
+        if (uid != null) {
+            markersReference = markersRoot.child(uid);
+            markersReference.addValueEventListener(markersListener);
+        }
+    }
+
+    @Override
+    protected void onDetach() {
+        groupsReference.removeEventListener(listener);
+        if (markersReference != null) {
+            markersReference.removeEventListener(markersListener);
+            markersReference = null;
+        }
+    }
+
+    private void publishGroups() {
+        List<ChatGroup> withUnread = new ArrayList<>(groups.size());
+        for (ChatGroup group : groups) {
+            withUnread.add(group.withReadMarker(markers.get(DataLayout.groupId(group.getGroupName()))));
+        }
+        publish(withUnread);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.chatapp.Repository;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import com.example.chatapp.model.GroupPresence;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Who else has one group open and who is typing, from groupPresence/<id>.
+// That node only holds the users currently in the group, never messages.
+// A typing time counts for TypingThrottle.EXPIRY_MS after it was written,
+// measured on the server clock, and the value is republished when the
+// oldest one runs out, so a typer that never sent its stop write still
+// disappears.
+public class GroupPresenceLiveData extends ListenerLiveData<GroupPresence> {
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+
+    private final DatabaseReference groupReference;
+    private final DatabaseReference offsetReference;
+    private final Supplier<String> currentUserId;
+    private final Runnable expire = this::update;
+
+    // Other users in the group, with their typing time or 0
+    private Map<String, Long> entries = Collections.emptyMap();
+    private long serverTimeOffset;
+    private int publishedHere = -1;
+    private int publishedTyping = -1;
+
+    private final ValueEventListener listener = new ValueEventListener() {
+        @Override
+        public void onDataChange(@NonNull DataSnapshot snapshot) {
+            String uid = currentUserId.get();
+            Map<String, Long> others = new HashMap<>();
+            for (DataSnapshot child : snapshot.getChildren()) {
+                if (child.getKey().equals(uid)) {
+                    continue;
+                }
+                Long typing = child.child("typing").getValue(Long.class);
+                others.put(child.getKey(), typing == null ? 0 : typing);
+            }
+            entries = others;
+            update();
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+
+        }
+    };
+
+    private final ValueEventListener offsetListener = new ValueEventListener() {
+        @Override
+        public void onDataChange(@NonNull DataSnapshot snapshot) {
+            Double offset = snapshot.getValue(Double.class);
+            serverTimeOffset = offset == null ? 0 : offset.longValue();
+            update();
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+
+        }
+    };
+
+    public GroupPresenceLiveData(DatabaseReference groupReference, Supplier<String> currentUserId) {
+        this.groupReference = groupReference;
+        this.offsetReference = groupReference.getDatabase().getReference(".info/serverTimeOffset");
+        this.currentUserId = currentUserId;
+    }
+
+    @Override
+    protected void onAttach() {
+        offsetReference.addValueEventListener(offsetListener);
+        groupReference.addValueEventListener(listener);
+    }
+
+    @Override
+    protected void onDetach() {
+        groupReference.removeEventListener(listener);
+        offsetReference.removeEventListener(offsetListener);
+        handler.removeCallbacks(expire);
+    }
+
+    private void update() {
+        long now = System.currentTimeMillis() + serverTimeOffset;
+        int typing = 0;
+        long nextExpiry = Long.MAX_VALUE;
+        for (long typingAt : entries.values()) {
+            long expiresAt = typingAt + TypingThrottle.EXPIRY_MS;
+            if (typingAt > 0 && expiresAt > now) {
+                typing++;
+                nextExpiry = Math.min(nextExpiry, expiresAt);
+            }
+        }
+        handler.removeCallbacks(expire);
+        if (nextExpiry != Long.MAX_VALUE) {
+            handler.postDelayed(expire, nextExpiry - now);
+        }
+
+        if (entries.size() == publishedHere && typing == publishedTyping) {
+            return;
+        }
+        publishedHere = entries.size();
+        publishedTyping = typing;
+        publish(new GroupPresence(publishedHere, publishedTyping));
+    }
+}
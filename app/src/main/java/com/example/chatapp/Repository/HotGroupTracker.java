@@ -0,0 +1,127 @@
+package com.example.chatapp.Repository;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+
+import com.example.chatapp.model.DataLayout;
+import com.google.firebase.database.Query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Keeps the newest page of the K most recently opened groups synced in the
+// Firebase disk cache, so re-entering one of them needs no round trip. The
+// newest page is in the latest day bucket, so each hot group syncs its bucket
+// list, today's bucket and yesterday's, which holds the newest page until
+// today has one. At UTC midnight the days move on and every group is
+// re-synced.
+public class HotGroupTracker {
+    private static final String PREFS = "Hot_Groups";
+    private static final String KEY_GROUPS = "groups";
+    private static final String SEPARATOR = "\n";
+    private static final long DAY_MS = 86_400_000L;
+
+    private final SharedPreferences prefs;
+    private final MessageShards shards;
+    private final int capacity;
+    // Most recently used first
+    private final List<String> groups = new ArrayList<>();
+    // The queries kept synced per group, so the same ones are released
+    private final Map<String, Query[]> synced = new HashMap<>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable rollOver = this::rollOver;
+    // Day bucket the synced queries were made for
+    private String syncedDay;
+
+    public HotGroupTracker(Context context, MessageShards shards, int capacity) {
+        this.prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        this.shards = shards;
+        this.capacity = capacity;
+
+        String saved = prefs.getString(KEY_GROUPS, "");
+        if (!saved.isEmpty()) {
+            groups.addAll(Arrays.asList(saved.split(SEPARATOR)));
+        }
+        syncedDay = today();
+        for (String group : groups) {
+            sync(group);
+        }
+        scheduleRollOver();
+    }
+
+    public synchronized void touch(String groupName) {
+        if (!today().equals(syncedDay)) {
+            // Missed the rollover, e.g. while the process was frozen
+            rollOver();
+        }
+        if (!groups.isEmpty() && groups.get(0).equals(groupName)) {
+            return;
+        }
+        boolean wasHot = groups.remove(groupName);
+        groups.add(0, groupName);
+        if (!wasHot) {
+            sync(groupName);
+        }
+        while (groups.size() > capacity) {
+            unsync(groups.remove(groups.size() - 1));
+        }
+        prefs.edit().putString(KEY_GROUPS, TextUtils.join(SEPARATOR, groups)).apply();
+    }
+
+    public synchronized List<String> getHotGroups() {
+        return new ArrayList<>(groups);
+    }
+
+    private synchronized void rollOver() {
+        handler.removeCallbacks(rollOver);
+        String today = today();
+        if (!today.equals(syncedDay)) {
+            syncedDay = today;
+            for (String group : groups) {
+                unsync(group);
+                sync(group);
+            }
+        }
+        scheduleRollOver();
+    }
+
+    private void scheduleRollOver() {
+        long now = System.currentTimeMillis();
+        handler.postDelayed(rollOver, DAY_MS - Math.floorMod(now, DAY_MS));
+    }
+
+    private static String today() {
+        return DataLayout.bucketOf(System.currentTimeMillis());
+    }
+
+    // Same queries BucketedMessages.latest() runs for the first page of an active group
+    private void sync(String groupName) {
+        String id = DataLayout.groupId(groupName);
+        String yesterday = DataLayout.bucketOf(System.currentTimeMillis() - DAY_MS);
+        Query[] queries = {
+                shards.buckets(id).orderByKey().limitToLast(1),
+                shards.messages(id).child(yesterday).orderByKey().limitToLast(MessageStream.PAGE_SIZE),
+                shards.messages(id).child(syncedDay).orderByKey().limitToLast(MessageStream.PAGE_SIZE)
+        };
+        for (Query query : queries) {
+            query.keepSynced(true);
+        }
+        synced.put(groupName, queries);
+    }
+
+    private void unsync(String groupName) {
+        Query[] queries = synced.remove(groupName);
+        if (queries == null) {
+            return;
+        }
+        for (Query query : queries) {
+            query.keepSynced(false);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.chatapp.Repository;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import androidx.lifecycle.MutableLiveData;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// LiveData that holds a Firebase listener only while someone observes it.
+// LiveData already counts observers per instance, and there is one instance
+// per database path, so the listener is attached once however many screens
+// observe it. It is detached DETACH_GRACE_MS after the last observer goes
+// away, which keeps it alive across a rotation. Values go out through a
+// SnapshotEmitter: at most one per frame, and the next only after the UI
+// called onConsumed() for the previous one.
+public abstract class ListenerLiveData<T> extends MutableLiveData<T> {
+    static final long DETACH_GRACE_MS = 5000;
+
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+    private static final AtomicInteger attachedCount = new AtomicInteger();
+
+    private final SnapshotEmitter<T> emitter = new SnapshotEmitter<>(new ChoreographerScheduler(), this::setValue);
+    private boolean attached;
+    private final Runnable detachRunnable = () -> {
+        if (attached && !hasActiveObservers()) {
+            attached = false;
+            attachedCount.decrementAndGet();
+            onDetach();
+        }
+    };
+
+    // Number of Firebase listeners currently held across the app
+    public static int getAttachedCount() {
+        return attachedCount.get();
+    }
+
+    // Main thread only; replaces any value still waiting for a frame
+    protected void publish(T value) {
+        emitter.submit(value);
+    }
+
+    // Called by the UI once the last value is on screen
+    public void onConsumed() {
+        emitter.consumed();
+    }
+
+    @Override
+    protected void onActive() {
+        handler.removeCallbacks(detachRunnable);
+        if (!attached) {
+            attached = true;
+            attachedCount.incrementAndGet();
+            onAttach();
+        }
+    }
+
+    @Override
+    protected void onInactive() {
+        handler.postDelayed(detachRunnable, DETACH_GRACE_MS);
+    }
+
+    protected abstract void onAttach();
+
+    protected abstract void onDetach();
+
+    private static final class ChoreographerScheduler implements SnapshotEmitter.FrameScheduler {
+        private Choreographer.FrameCallback posted;
+
+        @Override
+        public void postFrameCallbackDelayed(SnapshotEmitter.FrameCallback callback, long delayMillis) {
+            posted = callback::doFrame;
+            Choreographer.getInstance().postFrameCallbackDelayed(posted, delayMillis);
+        }
+
+        @Override
+        public void removeFrameCallback(SnapshotEmitter.FrameCallback callback) {
+            if (posted != null) {
+                Choreographer.getInstance().removeFrameCallback(posted);
+                posted = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.chatapp.Repository;
+
+import android.content.Context;
+
+import com.example.chatapp.R;
+import com.example.chatapp.model.DataLayout;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+
+// Picks the database instance that holds a group's messages. With no shard
+// URLs configured every group uses the default instance; otherwise groups
+// are spread over the listed instances by DataLayout.shardOf(). Directory
+// data (groups, members, read markers) always stays in the default one.
+public class MessageShards {
+    private final FirebaseDatabase directory;
+    private final String[] urls;
+    private final FirebaseDatabase[] shards;
+    private final Context context;
+
+    public MessageShards(Context context, FirebaseDatabase directory) {
+        this.context = context;
+        this.directory = directory;
+        this.urls = context.getResources().getStringArray(R.array.message_shard_urls);
+        this.shards = new FirebaseDatabase[urls.length];
+    }
+
+    public synchronized FirebaseDatabase databaseFor(String groupId) {
+        if (urls.length == 0) {
+            return directory;
+        }
+        int shard = DataLayout.shardOf(groupId, urls.length);
+        if (shards[shard] == null) {
+            FirebaseDatabase database = FirebaseDatabase.getInstance(urls[shard]);
+            // Has to happen before the instance is first used
+            FirebasePersistence.configure(context, database);
+            shards[shard] = database;
+        }
+        return shards[shard];
+    }
+
+    // messages/<id>
+    public DatabaseReference messages(String groupId) {
+        return databaseFor(groupId).getReference(DataLayout.MESSAGES).child(groupId);
+    }
+
+    // messageBuckets/<id>
+    public DatabaseReference buckets(String groupId) {
+        return databaseFor(groupId).getReference(DataLayout.MESSAGE_BUCKETS).child(groupId);
+    }
+}
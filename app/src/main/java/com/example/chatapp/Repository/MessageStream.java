@@ -0,0 +1,472 @@
+package com.example.chatapp.Repository;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.chatapp.db.MessageStore;
+import com.example.chatapp.model.ChatMessage;
+import com.example.chatapp.model.MessageCodec;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+public class MessageStream extends ListenerLiveData<List<ChatMessage>> {
+    static final int PAGE_SIZE = 50;
+    static final int MAX_PAGES = 10;
+
+    // Snapshots are decoded here instead of in the Firebase callbacks on the main thread.
+    // Each stream has at most one decode task queued, so the pool's queue stays bounded.
+    private static final ExecutorService decodeExecutor = Executors.newFixedThreadPool(2);
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // A raw child event waiting to be decoded
+    private static final class Event {
+        final DataSnapshot snapshot;
+        final boolean removed;
+
+        Event(DataSnapshot snapshot, boolean removed) {
+            this.snapshot = snapshot;
+            this.removed = removed;
+        }
+    }
+
+    private final String groupName;
+    private final BucketedMessages messages;
+    private final MessageStore store;
+    private final CacheStats cacheStats;
+    private final Supplier<String> currentUserId;
+    private final MessageWindow window = new MessageWindow(PAGE_SIZE * MAX_PAGES);
+
+    private BucketedMessages.Follower follower;
+    // Bumped on every attach and detach, so a load started by an earlier
+    // attach can tell it is stale when it completes
+    private int attachGeneration;
+    private boolean loading;
+    // The attach generation that started the current load; a stale load
+    // clears `loading` only if no newer attach has started one since
+    private int loadGeneration;
+    // Newest push key received from the server or the local store
+    private String lastSyncedKey;
+    // No older history left on the server
+    private boolean reachedStart;
+    // False once paging back has pushed the newest messages out of the window
+    private boolean atTail = true;
+    // After a jump the store may have a hole between the window and the
+    // newest messages, so newer pages come from the server until the tail
+    private boolean gapAfterWindow;
+    // Room holds one unbroken run of messages up to the newest. Pages fetched
+    // around a jump may not touch that run, so they are shown but not saved.
+    private boolean windowContiguous = true;
+    // Told when a publish makes the window larger than the last one, so the
+    // cache can check its budgets; set by MessageStreamCache
+    private Runnable onGrown;
+    private int publishedMessages;
+    private long publishedBytes;
+
+    // Child events waiting for the decode pool, guarded by eventLock
+    private final Object eventLock = new Object();
+    private List<Event> pendingEvents = new ArrayList<>();
+    private boolean decodeScheduled;
+
+    private final ChildEventListener listener = new ChildEventListener() {
+        @Override
+        public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+            enqueue(snapshot, false);
+        }
+
+        @Override
+        public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+            enqueue(snapshot, false);
+        }
+
+        @Override
+        public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+            enqueue(snapshot, true);
+        }
+
+        @Override
+        public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+
+        }
+    };
+
+    public MessageStream(String groupName, BucketedMessages messages, MessageStore store,
+                         CacheStats cacheStats, Supplier<String> currentUserId) {
+        this.groupName = groupName;
+        this.messages = messages;
+        this.store = store;
+        this.cacheStats = cacheStats;
+        this.currentUserId = currentUserId;
+    }
+
+    @Override
+    protected void onAttach() {
+        int generation = ++attachGeneration;
+        if (lastSyncedKey != null) {
+            // Re-attached after a detach: follow the whole window again, so
+            // edits and deletes made while detached reach it as well
+            follow(window.firstKey(), true);
+            return;
+        }
+
+        startLoad();
+        store.loadLatest(groupName, PAGE_SIZE, local -> {
+            if (generation != attachGeneration) {
+                // Detached, and maybe re-attached, since; the newer attach owns loading
+                return;
+            }
+            if (local.isEmpty()) {
+                cacheStats.miss();
+                fetchFirstPage(generation);
+                return;
+            }
+            cacheStats.hit();
+            markOwnership(local);
+            window.append(local);
+            lastSyncedKey = window.lastKey();
+            publish();
+            loading = false;
+
+            // Follow the cached page too, so edits and deletes made while the
+            // app was away reach the window and Room; unchanged messages are no-ops
+            follow(window.firstKey(), true);
+        });
+    }
+
+    @Override
+    protected void onDetach() {
+        attachGeneration++;
+        if (follower != null) {
+            follower.stop();
+            follower = null;
+        }
+    }
+
+    public void loadOlder() {
+        String cursor = window.firstKey();
+        if (loading || reachedStart || cursor == null) {
+            return;
+        }
+
+        int generation = startLoad();
+        store.loadBefore(groupName, cursor, PAGE_SIZE, local -> {
+            if (!isCurrent(generation)) {
+                return;
+            }
+            if (!local.isEmpty()) {
+                cacheStats.hit();
+                markOwnership(local);
+                prepend(local);
+                return;
+            }
+            cacheStats.miss();
+            fetchOlderPage(cursor, generation);
+        });
+    }
+
+    public void loadNewer() {
+        String cursor = window.lastKey();
+        if (loading || atTail || cursor == null) {
+            return;
+        }
+
+        int generation = startLoad();
+        if (gapAfterWindow) {
+            fetchNewerPage(cursor, generation);
+            return;
+        }
+        // Everything newer than the window is already on disk, the live listener keeps it there
+        store.loadAfter(groupName, cursor, PAGE_SIZE, local -> {
+            if (!isCurrent(generation)) {
+                return;
+            }
+            markOwnership(local);
+            append(local, local.size() < PAGE_SIZE);
+        });
+    }
+
+    // Shows the page right after readKey, the first unread messages, in
+    // place of the window. Firebase serves it from its cache when it can.
+    public void jumpAfter(String readKey, MessageStore.Callback<String> onShown) {
+        if (loading) {
+            return;
+        }
+        messages.after(readKey, PAGE_SIZE, new PageCallback(startLoad()) {
+            @Override
+            void onDecoded(List<ChatMessage> page, boolean end) {
+                if (page.isEmpty()) {
+                    loading = false;
+                    return;
+                }
+                window.clear();
+                gapAfterWindow = true;
+                windowContiguous = false;
+                append(page, end);
+                onShown.onResult(window.firstKey());
+            }
+        });
+    }
+
+    // The window reaches the newest message
+    public boolean isAtTail() {
+        return atTail;
+    }
+
+    public int getMessageCount() {
+        return window.size();
+    }
+
+    public long getEstimatedBytes() {
+        return window.getEstimatedBytes();
+    }
+
+    // Shows a message that is still in the outbox; the live listener later
+    // delivers the same push key and replaces it
+    public void addLocal(ChatMessage message) {
+        if (!atTail) {
+            return;
+        }
+        window.put(message);
+        publish();
+    }
+
+    private void fetchFirstPage(int generation) {
+        messages.latest(PAGE_SIZE, new PageCallback(generation) {
+            @Override
+            void onDecoded(List<ChatMessage> page, boolean end) {
+                onFirstPage(page, end);
+            }
+        });
+    }
+
+    private void onFirstPage(List<ChatMessage> page, boolean end) {
+        loading = false;
+        store.saveMessages(groupName, page);
+        reachedStart = end;
+        window.append(page);
+        lastSyncedKey = window.lastKey();
+        publish();
+
+        // Follow the first page and everything after it for adds, edits and deletes
+        follow(window.firstKey(), true);
+    }
+
+    // Pages stop at day bucket boundaries, so only `end` says there is nothing older
+    private void fetchOlderPage(String cursor, int generation) {
+        messages.before(cursor, PAGE_SIZE, new PageCallback(generation) {
+            @Override
+            void onDecoded(List<ChatMessage> page, boolean end) {
+                if (windowContiguous) {
+                    store.saveMessages(groupName, page);
+                }
+                reachedStart = end;
+                prepend(page);
+            }
+        });
+    }
+
+    private void fetchNewerPage(String cursor, int generation) {
+        messages.after(cursor, PAGE_SIZE, new PageCallback(generation) {
+            @Override
+            void onDecoded(List<ChatMessage> page, boolean end) {
+                append(page, end);
+            }
+        });
+    }
+
+    private int startLoad() {
+        loading = true;
+        loadGeneration = attachGeneration;
+        return loadGeneration;
+    }
+
+    // False for the result of a load started before a detach: the window may
+    // have been followed again since, so the result is dropped
+    private boolean isCurrent(int generation) {
+        if (generation == attachGeneration) {
+            return true;
+        }
+        if (generation == loadGeneration) {
+            loading = false;
+        }
+        return false;
+    }
+
+    // From fromKey on, or from today when the group has no messages yet
+    private void follow(String fromKey, boolean inclusive) {
+        if (follower != null) {
+            follower.stop();
+        }
+        follower = messages.follow(fromKey, inclusive, listener);
+    }
+
+    private void append(List<ChatMessage> page, boolean end) {
+        atTail = end;
+        if (atTail) {
+            gapAfterWindow = false;
+        }
+        window.append(page);
+        reachedStart = false;
+        publish();
+        loading = false;
+    }
+
+    private void prepend(List<ChatMessage> page) {
+        if (window.prepend(page)) {
+            atTail = false;
+        }
+        publish();
+        loading = false;
+    }
+
+    private void enqueue(DataSnapshot snapshot, boolean removed) {
+        synchronized (eventLock) {
+            pendingEvents.add(new Event(snapshot, removed));
+            if (decodeScheduled) {
+                return;
+            }
+            decodeScheduled = true;
+        }
+        decodeExecutor.execute(this::drainEvents);
+    }
+
+    // Runs on the decode pool: takes everything queued so far as one batch
+    private void drainEvents() {
+        List<Event> events;
+        synchronized (eventLock) {
+            events = pendingEvents;
+            pendingEvents = new ArrayList<>();
+        }
+
+        String uid = currentUserId.get();
+        List<ChatMessage> decoded = new ArrayList<>(events.size());
+        for (Event event : events) {
+            // Removals keep a null slot so they stay in order with the adds
+            ChatMessage message = event.removed ? null : decode(event.snapshot, uid);
+            decoded.add(message);
+        }
+        mainHandler.post(() -> apply(events, decoded));
+
+        synchronized (eventLock) {
+            if (pendingEvents.isEmpty()) {
+                decodeScheduled = false;
+                return;
+            }
+        }
+        decodeExecutor.execute(this::drainEvents);
+    }
+
+    // Back on the main thread: one store write and one publish per batch
+    private void apply(List<Event> events, List<ChatMessage> decoded) {
+        List<ChatMessage> received = new ArrayList<>();
+        for (int i = 0; i < events.size(); i++) {
+            String key = events.get(i).snapshot.getKey();
+            ChatMessage message = decoded.get(i);
+            if (events.get(i).removed) {
+                store.deleteMessage(key);
+                window.remove(key);
+                continue;
+            }
+            if (message == null) {
+                continue;
+            }
+            received.add(message);
+            if (lastSyncedKey == null || key.compareTo(lastSyncedKey) > 0) {
+                lastSyncedKey = key;
+            }
+
+            // While scrolled back in history, live messages past the window are picked up by loadNewer()
+            if (!atTail && (window.size() == 0 || key.compareTo(window.lastKey()) > 0)) {
+                continue;
+            }
+            window.put(message);
+        }
+        store.saveMessages(groupName, received);
+        publish();
+    }
+
+    // A network page: decoded on the pool, delivered on the main thread
+    // unless the attach that asked for it has ended
+    private abstract class PageCallback implements BucketedMessages.PageCallback {
+        private final int generation;
+
+        PageCallback(int generation) {
+            this.generation = generation;
+        }
+
+        abstract void onDecoded(List<ChatMessage> page, boolean end);
+
+        @Override
+        public void onPage(List<DataSnapshot> children, boolean end) {
+            decodeExecutor.execute(() -> {
+                String uid = currentUserId.get();
+                List<ChatMessage> page = new ArrayList<>(children.size());
+                for (DataSnapshot child : children) {
+                    ChatMessage message = decode(child, uid);
+                    if (message != null) {
+                        page.add(message);
+                    }
+                }
+                mainHandler.post(() -> {
+                    if (isCurrent(generation)) {
+                        onDecoded(page, end);
+                    }
+                });
+            });
+        }
+
+        @Override
+        public void onCancelled() {
+            if (generation == loadGeneration) {
+                loading = false;
+            }
+        }
+    }
+
+    private void markOwnership(List<ChatMessage> messages) {
+        String uid = currentUserId.get();
+        for (ChatMessage message : messages) {
+            message.markOwnership(uid);
+        }
+    }
+
+    private ChatMessage decode(DataSnapshot snapshot, String uid) {
+        ChatMessage message = MessageCodec.decode(snapshot.getKey(), snapshot.getValue());
+        if (message != null) {
+            message.markOwnership(uid);
+        }
+        return message;
+    }
+
+    void setOnGrown(Runnable onGrown) {
+        this.onGrown = onGrown;
+    }
+
+    // Snapshots are immutable views, the window never writes where one can see.
+    // Several publishes within a frame reach the UI as one update.
+    private void publish() {
+        publish(window.snapshot());
+        int messages = window.size();
+        long bytes = window.getEstimatedBytes();
+        boolean grown = messages > publishedMessages || bytes > publishedBytes;
+        publishedMessages = messages;
+        publishedBytes = bytes;
+        if (grown && onGrown != null) {
+            onGrown.run();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.chatapp.Repository;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+import androidx.annotation.NonNull;
+
+import com.example.chatapp.R;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Per-group message streams in least recently opened order. Reopening a
+// cached group shows its window at once. Once all windows together exceed
+// the message or byte budget, the least recently opened streams that nobody
+// observes are dropped; such a group is rebuilt from Room on its next open.
+// The budgets are checked on every put and again whenever a cached window
+// grows, since paging and live messages enlarge windows already cached.
+// The byte budget is a share of the app's heap class, smaller on low-RAM
+// devices, and onTrimMemory releases more on demand.
+public class MessageStreamCache implements ComponentCallbacks2 {
+    // Share of the per-app heap the cached windows may take, as a divisor
+    private static final int HEAP_SHARE = 8;
+    private static final int HEAP_SHARE_LOW_RAM = 16;
+
+    // Access order, so iteration starts at the least recently opened group
+    private final LinkedHashMap<String, MessageStream> streams = new LinkedHashMap<>(16, 0.75f, true);
+    private final CacheStats stats = new CacheStats();
+    private final int maxMessages;
+    private final long maxBytes;
+    private int evictions;
+
+    public MessageStreamCache(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        boolean lowRam = activityManager.isLowRamDevice();
+        int configuredMessages = context.getResources().getInteger(R.integer.message_cache_max_messages);
+        maxMessages = lowRam ? configuredMessages / 2 : configuredMessages;
+        maxBytes = activityManager.getMemoryClass() * 1024L * 1024L / (lowRam ? HEAP_SHARE_LOW_RAM : HEAP_SHARE);
+        context.registerComponentCallbacks(this);
+    }
+
+    // Counts as a hit or miss; opening a group goes through here
+    public MessageStream open(String groupName) {
+        MessageStream stream = streams.get(groupName);
+        if (stream != null) {
+            stats.hit();
+        } else {
+            stats.miss();
+        }
+        return stream;
+    }
+
+    // For paging and sends in a group that is already open; not counted
+    public MessageStream get(String groupName) {
+        return streams.get(groupName);
+    }
+
+    public void put(String groupName, MessageStream stream) {
+        streams.put(groupName, stream);
+        stream.setOnGrown(() -> trimTo(maxMessages, maxBytes));
+        trimTo(maxMessages, maxBytes);
+    }
+
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    public int getEvictionCount() {
+        return evictions;
+    }
+
+    public int getMessageCount() {
+        int messages = 0;
+        for (MessageStream stream : streams.values()) {
+            messages += stream.getMessageCount();
+        }
+        return messages;
+    }
+
+    public long getEstimatedBytes() {
+        long bytes = 0;
+        for (MessageStream stream : streams.values()) {
+            bytes += stream.getEstimatedBytes();
+        }
+        return bytes;
+    }
+
+    private void trimTo(int messageBudget, long byteBudget) {
+        int messages = getMessageCount();
+        long bytes = getEstimatedBytes();
+        Iterator<Map.Entry<String, MessageStream>> it = streams.entrySet().iterator();
+        while ((messages > messageBudget || bytes > byteBudget) && it.hasNext()) {
+            MessageStream stream = it.next().getValue();
+            // A group on screen stays, it is bounded by its own window
+            if (stream.hasObservers()) {
+                continue;
+            }
+            messages -= stream.getMessageCount();
+            bytes -= stream.getEstimatedBytes();
+            stream.setOnGrown(null);
+            it.remove();
+            evictions++;
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            // Keep only what is on screen
+            trimTo(0, 0);
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            trimTo(maxMessages / 2, maxBytes / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        trimTo(0, 0);
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+}
@@ -0,0 +1,351 @@
+package com.example.chatapp.Repository;
+
+import com.example.chatapp.model.ChatMessage;
+import com.example.chatapp.model.SenderDictionary;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Bounded, key-ordered window of a group's messages, stored in columns:
+// push keys, times, sender indices into a SenderDictionary, ownership flags,
+// and every text in one shared char buffer. snapshot() does not copy; it
+// returns an immutable view over the same arrays, which keeps the messages
+// it hands out (see MessageList). The window only writes into slots no
+// snapshot can see, so adding at either end stays free while the UI holds
+// an older snapshot. Edits, deletes, inserts in the middle and running
+// out of room rebuild the columns, which also drops the text of trimmed
+// messages.
+public class MessageWindow {
+    private static final int MIN_SLOTS = 16;
+    static final int MIN_TEXT_CHARS = 256;
+    // Per message: key String, the slot in each column, and the view object made on get()
+    private static final int MESSAGE_OVERHEAD_BYTES = 100;
+    private static final Comparator<ChatMessage> BY_KEY = (a, b) -> a.getKey().compareTo(b.getKey());
+
+    private final int capacity;
+    // Append-only, so every snapshot can share it
+    private final SenderDictionary senders = new SenderDictionary();
+
+    private Columns columns = new Columns(MIN_SLOTS, MIN_TEXT_CHARS);
+    // Live slots are [head, tail)
+    private int head = MIN_SLOTS / 2;
+    private int tail = MIN_SLOTS / 2;
+    // Slots a published snapshot may still read; empty while sharedFrom >= sharedTo
+    private int sharedFrom = Integer.MAX_VALUE;
+    private int sharedTo = Integer.MIN_VALUE;
+    private long liveTextChars;
+
+    static final class Columns {
+        final String[] keys;
+        final long[] times;
+        final int[] senders;
+        final boolean[] mine;
+        final int[] textStart;
+        final int[] textLength;
+        final char[] text;
+        int textUsed;
+
+        Columns(int slots, int textChars) {
+            keys = new String[slots];
+            times = new long[slots];
+            senders = new int[slots];
+            mine = new boolean[slots];
+            textStart = new int[slots];
+            textLength = new int[slots];
+            text = new char[textChars];
+        }
+    }
+
+    public MessageWindow(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void put(ChatMessage message) {
+        add(message);
+        trimOldest();
+    }
+
+    // Adds a page of older history; returns true if the newest end had to be dropped
+    public boolean prepend(List<ChatMessage> older) {
+        addAll(older);
+        boolean trimmed = false;
+        while (size() > capacity) {
+            tail--;
+            liveTextChars -= columns.textLength[tail];
+            trimmed = true;
+        }
+        return trimmed;
+    }
+
+    public void append(List<ChatMessage> newer) {
+        addAll(newer);
+        trimOldest();
+    }
+
+    public boolean remove(String key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return false;
+        }
+        rebuild(size() - 1, index, null);
+        return true;
+    }
+
+    // Published snapshots keep the old columns
+    public void clear() {
+        columns = new Columns(MIN_SLOTS, MIN_TEXT_CHARS);
+        head = MIN_SLOTS / 2;
+        tail = MIN_SLOTS / 2;
+        sharedFrom = Integer.MAX_VALUE;
+        sharedTo = Integer.MIN_VALUE;
+        liveTextChars = 0;
+    }
+
+    public String firstKey() {
+        return size() == 0 ? null : columns.keys[head];
+    }
+
+    public String lastKey() {
+        return size() == 0 ? null : columns.keys[tail - 1];
+    }
+
+    public int size() {
+        return tail - head;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Approximate heap retained by the messages in the window
+    public long getEstimatedBytes() {
+        return (long) size() * MESSAGE_OVERHEAD_BYTES + 2 * liveTextChars;
+    }
+
+    public List<ChatMessage> snapshot() {
+        if (size() > 0) {
+            sharedFrom = Math.min(sharedFrom, head);
+            sharedTo = Math.max(sharedTo, tail);
+        }
+        return new MessageList(columns, head, tail, senders);
+    }
+
+    private void addAll(List<ChatMessage> messages) {
+        List<ChatMessage> sorted = new ArrayList<>(messages);
+        Collections.sort(sorted, BY_KEY);
+        // Walking an older page backwards keeps every add at the head
+        if (size() > 0 && !sorted.isEmpty() && sorted.get(sorted.size() - 1).getKey().compareTo(firstKey()) < 0) {
+            Collections.reverse(sorted);
+        }
+        for (ChatMessage message : sorted) {
+            add(message);
+        }
+    }
+
+    private void add(ChatMessage message) {
+        String key = message.getKey();
+        if (size() == 0 || key.compareTo(lastKey()) > 0) {
+            if (!writable(tail) || !hasRoomForText(message)) {
+                makeRoomFor(message);
+            }
+            write(tail++, message);
+            return;
+        }
+        if (key.compareTo(firstKey()) < 0) {
+            if (!writable(head - 1) || !hasRoomForText(message)) {
+                makeRoomFor(message);
+            }
+            write(--head, message);
+            return;
+        }
+        int index = indexOf(key);
+        if (index >= 0) {
+            if (sameAt(head + index, message)) {
+                // Delivered again by a listener that starts inside the window
+                return;
+            }
+            // Edited in place: the slot is visible to snapshots, so copy
+            rebuild(size(), index, message);
+        } else {
+            rebuild(size() + 1, -index - 1, message);
+        }
+    }
+
+    private void trimOldest() {
+        while (size() > capacity) {
+            liveTextChars -= columns.textLength[head];
+            head++;
+        }
+    }
+
+    private boolean writable(int slot) {
+        return slot >= 0 && slot < columns.keys.length && (slot < sharedFrom || slot >= sharedTo);
+    }
+
+    private boolean hasRoomForText(ChatMessage message) {
+        return columns.textUsed + length(message.getText()) <= columns.text.length;
+    }
+
+    private void write(int slot, ChatMessage message) {
+        Columns c = columns;
+        String text = message.getText() == null ? "" : message.getText();
+        c.keys[slot] = message.getKey();
+        c.times[slot] = message.getTime();
+        c.senders[slot] = message.getSenderId() == null ? -1 : senders.indexOf(message.getSenderId());
+        c.mine[slot] = message.isMine();
+        c.textStart[slot] = c.textUsed;
+        c.textLength[slot] = text.length();
+        text.getChars(0, text.length(), c.text, c.textUsed);
+        c.textUsed += text.length();
+        liveTextChars += text.length();
+    }
+
+    // Copies the live messages into columns with room for one more message
+    // at either end, its text included
+    private void makeRoomFor(ChatMessage message) {
+        rebuild(size(), -1, null, length(message.getText()));
+    }
+
+    private void rebuild(int count, int index, ChatMessage message) {
+        rebuild(count, index, message, 0);
+    }
+
+    // Copies the live messages into fresh, unshared columns holding `count`
+    // messages with room left at both ends, and text room for reserveChars
+    // more. With index < 0 everything is copied as is; otherwise `message`
+    // is inserted at index (count grows), replaces it (count unchanged), or
+    // the slot is dropped (message null).
+    private void rebuild(int count, int index, ChatMessage message, int reserveChars) {
+        Columns old = columns;
+        int oldHead = head;
+        int oldSize = size();
+        int slots = Math.max(MIN_SLOTS, 2 * (count + 1));
+        long textChars = 2 * (liveTextChars + length(message == null ? null : message.getText()) + reserveChars);
+
+        columns = new Columns(slots, (int) Math.max(MIN_TEXT_CHARS, textChars));
+        head = (slots - count) / 2;
+        tail = head;
+        sharedFrom = Integer.MAX_VALUE;
+        sharedTo = Integer.MIN_VALUE;
+        liveTextChars = 0;
+
+        boolean insert = count > oldSize;
+        for (int i = 0; i < oldSize; i++) {
+            if (i == index) {
+                if (message != null) {
+                    write(tail++, message);
+                }
+                if (!insert) {
+                    continue;
+                }
+            }
+            copy(old, oldHead + i, tail++);
+        }
+        if (insert && index == oldSize) {
+            write(tail++, message);
+        }
+    }
+
+    private void copy(Columns from, int fromSlot, int slot) {
+        Columns c = columns;
+        int length = from.textLength[fromSlot];
+        c.keys[slot] = from.keys[fromSlot];
+        c.times[slot] = from.times[fromSlot];
+        c.senders[slot] = from.senders[fromSlot];
+        c.mine[slot] = from.mine[fromSlot];
+        c.textStart[slot] = c.textUsed;
+        c.textLength[slot] = length;
+        System.arraycopy(from.text, from.textStart[fromSlot], c.text, c.textUsed, length);
+        c.textUsed += length;
+        liveTextChars += length;
+    }
+
+    // Index from head, or -(insertion point) - 1 like Arrays.binarySearch
+    private int indexOf(String key) {
+        int found = Arrays.binarySearch(columns.keys, head, tail, key);
+        return found >= 0 ? found - head : found + head;
+    }
+
+    private boolean sameAt(int slot, ChatMessage message) {
+        Columns c = columns;
+        String text = message.getText() == null ? "" : message.getText();
+        int sender = c.senders[slot];
+        String senderId = sender < 0 ? null : senders.get(sender);
+        return c.times[slot] == message.getTime()
+                && c.mine[slot] == message.isMine()
+                && (senderId == null ? message.getSenderId() == null : senderId.equals(message.getSenderId()))
+                && sameText(slot, text);
+    }
+
+    private boolean sameText(int slot, String text) {
+        Columns c = columns;
+        if (c.textLength[slot] != text.length()) {
+            return false;
+        }
+        int start = c.textStart[slot];
+        for (int i = 0; i < text.length(); i++) {
+            if (c.text[start + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    // Immutable view of one snapshot. get() builds a ChatMessage, with its
+    // display time formatted, the first time an index is read and returns
+    // the same one after that, so binds, view types, item ids and DiffUtil
+    // don't allocate per call. Built messages live as long as the snapshot,
+    // which is mostly while the adapter shows it; a newer snapshot builds
+    // its own on first access. Safe to read from DiffUtil's thread.
+    static final class MessageList extends AbstractList<ChatMessage> implements RandomAccess {
+        private final Columns columns;
+        private final int from;
+        private final int to;
+        private final SenderDictionary senders;
+        private final AtomicReferenceArray<ChatMessage> built;
+
+        MessageList(Columns columns, int from, int to, SenderDictionary senders) {
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+            this.senders = senders;
+            this.built = new AtomicReferenceArray<>(Math.max(0, to - from));
+        }
+
+        @Override
+        public ChatMessage get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("index " + index + ", size " + size());
+            }
+            ChatMessage message = built.get(index);
+            if (message != null) {
+                return message;
+            }
+            int slot = from + index;
+            Columns c = columns;
+            int sender = c.senders[slot];
+            message = new ChatMessage(sender < 0 ? null : senders.get(sender),
+                    new String(c.text, c.textStart[slot], c.textLength[slot]), c.times[slot]);
+            message.setKey(c.keys[slot]);
+            message.setMine(c.mine[slot]);
+            message.convertTime();
+            // Two threads may build the same index; both get the first one stored
+            return built.compareAndSet(index, null, message) ? message : built.get(index);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
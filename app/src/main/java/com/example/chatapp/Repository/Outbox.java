@@ -0,0 +1,276 @@
+package com.example.chatapp.Repository;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.chatapp.db.MessageStore;
+import com.example.chatapp.db.OutboxEntity;
+import com.example.chatapp.model.ChatMessage;
+import com.example.chatapp.model.DataLayout;
+import com.example.chatapp.model.MessageCodec;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ServerValue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Sent messages are persisted first and then flushed in batches, each batch
+// as one multi-path updateChildren per database instance: the messages and
+// their day bucket counts go to each group's shard, the group meta to the
+// directory. A burst of sends inside FLUSH_DELAY_MS costs one round trip per
+// instance, and each group's messageCount grows by its share of the batch in
+// the same write as the messages whenever the shard is the directory, so the
+// counter unread badges are derived from does not drift from the messages.
+// The sender's read marker moves along in the directory write, so a user's
+// own messages never count as unread for them.
+// Failed flushes are retried with exponential backoff; rows leave the outbox
+// only once every instance has acknowledged them. Writes to different
+// instances are not atomic, so which of a message's writes were
+// acknowledged is saved on its outbox row and a retry, also one after a
+// restart, only resends the rest; the counters are not incremented twice.
+// A write the server refuses, such as one the rules deny, fails the same way
+// on every retry, so it is not retried: the batch is resent one message at
+// a time to find the refused message, which is dropped; its local copy is
+// deleted too unless the message itself already reached its shard.
+public class Outbox {
+    private static final String TAG = "Outbox";
+    private static final long FLUSH_DELAY_MS = 100;
+    private static final long MIN_BACKOFF_MS = 1000;
+    private static final long MAX_BACKOFF_MS = 60_000;
+    private static final int MAX_BATCH = 100;
+
+    private final DatabaseReference reference;
+    private final MessageShards shards;
+    private final MessageStore store;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable flushRunnable = this::flush;
+
+    private boolean flushScheduled;
+    private boolean flushing;
+    private long backoffMs = MIN_BACKOFF_MS;
+    private int queueDepth;
+    private long lastFlushLatencyMs;
+    // Down to 1 while looking for a message the server refuses
+    private int batchLimit = MAX_BATCH;
+
+    // The update one database instance gets in a flush
+    private static final class Part {
+        final FirebaseDatabase database;
+        final Map<String, Object> update = new HashMap<>();
+        final Map<String, Integer> increments = new HashMap<>();
+        // Messages whose shard write and whose directory write this part carries
+        final List<String> shardKeys = new ArrayList<>();
+        final List<String> directoryKeys = new ArrayList<>();
+        DatabaseError error;
+
+        Part(FirebaseDatabase database) {
+            this.database = database;
+        }
+    }
+
+    // reference is the root of the directory instance
+    public Outbox(DatabaseReference reference, MessageShards shards, MessageStore store) {
+        this.reference = reference;
+        this.shards = shards;
+        this.store = store;
+    }
+
+    public void enqueue(String groupName, ChatMessage message) {
+        queueDepth++;
+        store.enqueueOutgoing(groupName, message, () -> scheduleFlush(FLUSH_DELAY_MS));
+    }
+
+    // Picks up anything left unsent by a previous session
+    public void resume() {
+        scheduleFlush(0);
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public long getLastFlushLatencyMs() {
+        return lastFlushLatencyMs;
+    }
+
+    private void scheduleFlush(long delayMs) {
+        if (flushScheduled || flushing) {
+            return;
+        }
+        flushScheduled = true;
+        handler.postDelayed(flushRunnable, delayMs);
+    }
+
+    private void flush() {
+        flushScheduled = false;
+        flushing = true;
+        store.loadOutgoing(batchLimit, pending -> {
+            if (pending.isEmpty()) {
+                flushing = false;
+                queueDepth = 0;
+                return;
+            }
+            write(pending);
+        });
+    }
+
+    private void write(List<OutboxEntity> pending) {
+        FirebaseDatabase directory = reference.getDatabase();
+        Map<FirebaseDatabase, Part> parts = new LinkedHashMap<>();
+        // Newest message per group becomes its preview
+        Map<String, OutboxEntity> newestPerGroup = new LinkedHashMap<>();
+        List<String> keys = new ArrayList<>(pending.size());
+        for (OutboxEntity message : pending) {
+            keys.add(message.pushKey);
+            String groupId = DataLayout.groupId(message.groupName);
+
+            FirebaseDatabase shard = shards.databaseFor(groupId);
+            if (!message.shardAcknowledged) {
+                Part part = part(parts, shard);
+                String day = DataLayout.bucketOf(message.pushKey);
+                part.update.put(DataLayout.MESSAGES + "/" + groupId + "/" + day + "/" + message.pushKey,
+                        MessageCodec.encode(message.toChatMessage()));
+                part.increments.merge(DataLayout.MESSAGE_BUCKETS + "/" + groupId + "/" + day, 1, Integer::sum);
+                part.shardKeys.add(message.pushKey);
+            }
+            if (!message.directoryAcknowledged) {
+                Part part = part(parts, directory);
+                part.increments.merge(metaPath(groupId) + "/messageCount", 1, Integer::sum);
+                if (message.senderId != null) {
+                    part.increments.merge(markerPath(message.senderId, groupId) + "/count", 1, Integer::sum);
+                }
+                part.directoryKeys.add(message.pushKey);
+                newestPerGroup.put(groupId, message);
+            }
+        }
+        for (Map.Entry<String, OutboxEntity> newest : newestPerGroup.entrySet()) {
+            String meta = metaPath(newest.getKey());
+            String text = newest.getValue().text;
+            String preview = text.length() > Repository.PREVIEW_LENGTH
+                    ? text.substring(0, Repository.PREVIEW_LENGTH)
+                    : text;
+            Map<String, Object> update = parts.get(directory).update;
+            update.put(meta + "/lastMessage", preview);
+            update.put(meta + "/lastActivity", ServerValue.TIMESTAMP);
+            if (newest.getValue().senderId != null) {
+                update.put(markerPath(newest.getValue().senderId, newest.getKey()) + "/key", newest.getValue().pushKey);
+            }
+        }
+
+        List<Part> sent = new ArrayList<>(parts.values());
+        List<Task<Void>> tasks = new ArrayList<>(sent.size());
+        for (Part part : sent) {
+            for (Map.Entry<String, Integer> increment : part.increments.entrySet()) {
+                part.update.put(increment.getKey(), ServerValue.increment(increment.getValue()));
+            }
+            // The completion listener keeps the error code, which the task's exception does not
+            TaskCompletionSource<Void> written = new TaskCompletionSource<>();
+            part.database.getReference().updateChildren(part.update, (error, ref) -> {
+                part.error = error;
+                written.setResult(null);
+            });
+            tasks.add(written.getTask());
+        }
+
+        long start = SystemClock.elapsedRealtime();
+        Tasks.whenAllComplete(tasks).addOnCompleteListener(done -> {
+            DatabaseError failure = null;
+            List<String> shardAcknowledged = new ArrayList<>();
+            List<String> directoryAcknowledged = new ArrayList<>();
+            for (Part part : sent) {
+                if (part.error == null) {
+                    shardAcknowledged.addAll(part.shardKeys);
+                    directoryAcknowledged.addAll(part.directoryKeys);
+                } else if (failure == null || isRetryable(failure)) {
+                    failure = part.error;
+                }
+            }
+            if (failure != null && !isRetryable(failure)) {
+                DatabaseError refused = failure;
+                store.acknowledgeOutgoing(shardAcknowledged, directoryAcknowledged,
+                        () -> refused(pending, shardAcknowledged, refused));
+                return;
+            }
+            if (failure != null) {
+                Log.w(TAG, "Flush of " + pending.size() + " messages failed, retrying in " + backoffMs + " ms",
+                        failure.toException());
+                long delayMs = backoffMs;
+                backoffMs = Math.min(MAX_BACKOFF_MS, backoffMs * 2);
+                store.acknowledgeOutgoing(shardAcknowledged, directoryAcknowledged, () -> {
+                    flushing = false;
+                    scheduleFlush(delayMs);
+                });
+                return;
+            }
+            lastFlushLatencyMs = SystemClock.elapsedRealtime() - start;
+            backoffMs = MIN_BACKOFF_MS;
+            remove(keys);
+        });
+    }
+
+    private void refused(List<OutboxEntity> pending, List<String> shardAcknowledged, DatabaseError error) {
+        if (pending.size() > 1) {
+            Log.w(TAG, "Flush of " + pending.size() + " messages refused, resending one at a time",
+                    error.toException());
+            batchLimit = 1;
+            flushing = false;
+            scheduleFlush(0);
+            return;
+        }
+        OutboxEntity message = pending.get(0);
+        String pushKey = message.pushKey;
+        Log.e(TAG, "Message " + pushKey + " refused, dropping it", error.toException());
+        batchLimit = MAX_BATCH;
+        // Once the shard has the message it is delivered; only the directory
+        // write was refused, so the local copy stays and just the row goes
+        if (!message.shardAcknowledged && !shardAcknowledged.contains(pushKey)) {
+            store.deleteMessage(pushKey);
+        }
+        remove(Collections.singletonList(pushKey));
+    }
+
+    private void remove(List<String> keys) {
+        store.removeOutgoing(keys, remaining -> {
+            queueDepth = remaining;
+            flushing = false;
+            if (remaining == 0) {
+                batchLimit = MAX_BATCH;
+            } else {
+                scheduleFlush(0);
+            }
+        });
+    }
+
+    // Everything but a refusal may pass once the connection, token or server recovers
+    private static boolean isRetryable(DatabaseError error) {
+        return error.getCode() != DatabaseError.PERMISSION_DENIED;
+    }
+
+    private static Part part(Map<FirebaseDatabase, Part> parts, FirebaseDatabase database) {
+        Part part = parts.get(database);
+        if (part == null) {
+            part = new Part(database);
+            parts.put(database, part);
+        }
+        return part;
+    }
+
+    private static String metaPath(String groupId) {
+        return DataLayout.GROUPS + "/" + groupId + "/" + DataLayout.META;
+    }
+
+    private static String markerPath(String uid, String groupId) {
+        return DataLayout.READ_MARKERS + "/" + uid + "/" + groupId;
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.chatapp.Repository;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import com.example.chatapp.model.DataLayout;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// The user's own presence. presence/<uid> is written on every connect and
+// the server turns it offline with a last-seen time when the connection
+// drops (onDisconnect). groupPresence/<id>/<uid> exists while the user has
+// the group open and carries the typing time; the server removes it on a
+// drop as well, so nobody stays "here" or "typing" after a crash or a lost
+// connection. Keystrokes reach the database through a TypingThrottle per
+// group, never one write per key. When the user signs out or another user
+// signs in, the previous user goes offline and their disconnect hooks are
+// cancelled, so they do not fire later for a session that is no longer
+// theirs. Main thread only.
+public class Presence {
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+
+    private final DatabaseReference root;
+    private final Supplier<String> currentUserId;
+    private final Map<String, TypingThrottle> throttles = new HashMap<>();
+    // The group on screen; written again after a reconnect since the server dropped it
+    private String openGroup;
+    private boolean connected;
+    // The user presence/<uid> was last set online for
+    private String onlineUid;
+
+    private final TypingThrottle.Timer timer = new TypingThrottle.Timer() {
+        @Override
+        public long now() {
+            return SystemClock.uptimeMillis();
+        }
+
+        @Override
+        public void postDelayed(Runnable task, long delayMillis) {
+            handler.postDelayed(task, delayMillis);
+        }
+
+        @Override
+        public void removeCallbacks(Runnable task) {
+            handler.removeCallbacks(task);
+        }
+    };
+
+    private final ValueEventListener connectionListener = new ValueEventListener() {
+        @Override
+        public void onDataChange(@NonNull DataSnapshot snapshot) {
+            connected = Boolean.TRUE.equals(snapshot.getValue(Boolean.class));
+            refresh();
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+
+        }
+    };
+
+    public Presence(DatabaseReference root, Supplier<String> currentUserId) {
+        this.root = root;
+        this.currentUserId = currentUserId;
+    }
+
+    public void start() {
+        root.getDatabase().getReference(".info/connected").addValueEventListener(connectionListener);
+    }
+
+    // Registers the disconnect hooks and goes online; again on every connect and sign-in
+    public void refresh() {
+        String uid = currentUserId.get();
+        if (onlineUid != null && !onlineUid.equals(uid)) {
+            // Auth changed without signOut(); best effort, the rules may no longer allow it
+            goOffline(onlineUid);
+        }
+        if (!connected || uid == null) {
+            return;
+        }
+        DatabaseReference me = root.child(DataLayout.PRESENCE).child(uid);
+        me.onDisconnect().setValue(status(false));
+        me.setValue(status(true));
+        onlineUid = uid;
+        if (openGroup != null) {
+            writeHere(groupEntry(openGroup, uid));
+        }
+    }
+
+    // Call before signing out, while the writes are still made as the user
+    public void signOut() {
+        if (onlineUid != null) {
+            goOffline(onlineUid);
+        }
+    }
+
+    public void enterGroup(String groupName) {
+        openGroup = groupName;
+        String uid = currentUserId.get();
+        if (uid != null) {
+            writeHere(groupEntry(groupName, uid));
+        }
+    }
+
+    public void leaveGroup(String groupName) {
+        if (!groupName.equals(openGroup)) {
+            return;
+        }
+        openGroup = null;
+        // Removing the entry clears typing too, so the throttle's own stop write is skipped
+        throttle(groupName).stop();
+        String uid = currentUserId.get();
+        if (uid != null) {
+            groupEntry(groupName, uid).removeValue();
+        }
+    }
+
+    public void onTyping(String groupName) {
+        if (groupName.equals(openGroup)) {
+            throttle(groupName).onKeystroke();
+        }
+    }
+
+    public void stopTyping(String groupName) {
+        TypingThrottle throttle = throttles.get(groupName);
+        if (throttle != null) {
+            throttle.stop();
+        }
+    }
+
+    // Typing writes for the group so far, across both kinds
+    public int getTypingWriteCount(String groupName) {
+        TypingThrottle throttle = throttles.get(groupName);
+        return throttle == null ? 0 : throttle.getWriteCount();
+    }
+
+    private TypingThrottle throttle(String groupName) {
+        TypingThrottle throttle = throttles.get(groupName);
+        if (throttle == null) {
+            throttle = new TypingThrottle(timer, typing -> writeTyping(groupName, typing));
+            throttles.put(groupName, throttle);
+        }
+        return throttle;
+    }
+
+    private void writeTyping(String groupName, boolean typing) {
+        String uid = currentUserId.get();
+        if (uid == null || !groupName.equals(openGroup)) {
+            return;
+        }
+        DatabaseReference typingRef = groupEntry(groupName, uid).child("typing");
+        if (typing) {
+            typingRef.setValue(ServerValue.TIMESTAMP);
+        } else {
+            typingRef.removeValue();
+        }
+    }
+
+    private void goOffline(String uid) {
+        onlineUid = null;
+        if (openGroup != null) {
+            throttle(openGroup).stop();
+            DatabaseReference entry = groupEntry(openGroup, uid);
+            entry.onDisconnect().cancel();
+            entry.removeValue();
+        }
+        DatabaseReference me = root.child(DataLayout.PRESENCE).child(uid);
+        me.onDisconnect().cancel();
+        me.setValue(status(false));
+    }
+
+    private static void writeHere(DatabaseReference entry) {
+        entry.onDisconnect().removeValue();
+        entry.child("online").setValue(true);
+    }
+
+    private DatabaseReference groupEntry(String groupName, String uid) {
+        return root.child(DataLayout.GROUP_PRESENCE).child(DataLayout.groupId(groupName)).child(uid);
+    }
+
+    private static Map<String, Object> status(boolean online) {
+        Map<String, Object> status = new HashMap<>();
+        status.put("online", online);
+        status.put("lastSeen", ServerValue.TIMESTAMP);
+        return status;
+    }
+}
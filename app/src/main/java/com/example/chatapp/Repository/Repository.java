@@ -5,9 +5,18 @@ import android.content.Intent;
 
 import androidx.annotation.NonNull;
 import androidx.lifecycle.MutableLiveData;
+import androidx.startup.AppInitializer;
 
+import com.example.chatapp.R;
+import com.example.chatapp.db.MessageSearchResult;
+import com.example.chatapp.db.MessageStore;
 import com.example.chatapp.model.ChatGroup;
 import com.example.chatapp.model.ChatMessage;
+import com.example.chatapp.model.DataLayout;
+import com.example.chatapp.model.GroupPresence;
+import com.example.chatapp.model.ReadMarker;
+import com.example.chatapp.services.TopicSubscriptionManager;
+import com.example.chatapp.startup.DatabaseInitializer;
 import com.example.chatapp.views.GroupsActivity;
 import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.Task;
@@ -17,27 +26,76 @@ import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.Transaction;
 import com.google.firebase.database.ValueEventListener;
-import com.google.firebase.messaging.FirebaseMessaging;
-import com.google.firebase.messaging.RemoteMessage;
 
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
 
 public class Repository {
-    MutableLiveData<List<ChatGroup>> chatGroupMutableLiveData;
+    // Screens and the local store work with group names; everything in the
+    // database is keyed by DataLayout.groupId(name) instead.
+    static final int PREVIEW_LENGTH = 100;
+    static final int SEARCH_LIMIT = 100;
+
+    private static Repository instance;
+
+    GroupListLiveData chatGroupMutableLiveData;
 
     FirebaseDatabase database;
     DatabaseReference reference;
-    DatabaseReference groupReference;
-    MutableLiveData<List<ChatMessage>> messagesLiveData;
+    MessageShards shards;
+    MessageStreamCache messageStreams;
+
+    MessageStore store;
+    HotGroupTracker hotGroups;
+    CacheStats cacheStats = new CacheStats();
+    Outbox outbox;
+    MutableLiveData<List<MessageSearchResult>> searchResults = new MutableLiveData<>();
+    // Results of a search older than the latest one are dropped
+    private int searchGeneration;
+    TopicSubscriptionManager subscriptions;
+    Presence presence;
+    // One per group, each holds its listener only while observed
+    Map<String, GroupPresenceLiveData> groupPresence = new HashMap<>();
+    // Read on every ingested message, so it is cached rather than asked from FirebaseAuth each time
+    volatile String currentUserId;
+
+    // One repository per process, so every screen shares the same listeners
+    public static synchronized Repository getInstance(Context context) {
+        if (instance == null) {
+            instance = new Repository(context.getApplicationContext());
+        }
+        return instance;
+    }
 
-    public Repository() {
-        this.chatGroupMutableLiveData = new MutableLiveData<>();
-        database = FirebaseDatabase.getInstance();
+    private Repository(Context context) {
+        database = AppInitializer.getInstance(context).initializeComponent(DatabaseInitializer.class);
         reference = database.getReference();
-        messagesLiveData = new MutableLiveData<>();
+        shards = new MessageShards(context, database);
+        store = new MessageStore(context);
+        messageStreams = new MessageStreamCache(context);
+        this.chatGroupMutableLiveData = new GroupListLiveData(reference.child(DataLayout.GROUPS),
+                reference.child(DataLayout.READ_MARKERS), this::getCurrentUserId, store);
+        outbox = new Outbox(reference, shards, store);
+        outbox.resume();
+        subscriptions = TopicSubscriptionManager.getInstance(context);
+        hotGroups = new HotGroupTracker(context, shards,
+                context.getResources().getInteger(R.integer.hot_group_count));
+
+        currentUserId = FirebaseAuth.getInstance().getUid();
+        presence = new Presence(reference, this::getCurrentUserId);
+        presence.start();
+        FirebaseAuth.getInstance().addAuthStateListener(auth -> {
+            currentUserId = auth.getUid();
+            presence.refresh();
+        });
+
+        // Only group metadata lives under groups, keep it synced so the group list always opens from cache
+        reference.child(DataLayout.GROUPS).keepSynced(true);
     }
 
     public void firebaseAnonymousAuth(Context context){
@@ -54,96 +112,295 @@ public class Repository {
     }
 
     public String getCurrentUserId(){
-        return FirebaseAuth.getInstance().getUid();
+        return currentUserId;
     }
 
     public void signOUT() {
+        subscriptions.dropAll();
+        presence.signOut();
         FirebaseAuth.getInstance().signOut();
     }
 
     public MutableLiveData<List<ChatGroup>> getChatGroupMutableLiveData() {
-        List<ChatGroup> groupList = new ArrayList<>();
+        return chatGroupMutableLiveData;
+    }
 
-        reference.addValueEventListener(new ValueEventListener() {
+    // The name is claimed with a transaction. A name that maps to an existing
+    // group (same name up to case and spacing) joins that group instead, and
+    // its stored name is left as the first creator wrote it.
+    public void createNewChatGroup(String groupName){
+        DatabaseReference meta = reference.child(DataLayout.GROUPS).child(DataLayout.groupId(groupName))
+                .child(DataLayout.META);
+        meta.child("groupName").runTransaction(new Transaction.Handler() {
+            boolean created;
+
+            @NonNull
             @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                groupList.clear();
-                for(DataSnapshot dataSnapshot: snapshot.getChildren()){
-                    ChatGroup group = new ChatGroup(dataSnapshot.getKey());
-                    groupList.add(group);
-                    chatGroupMutableLiveData.postValue(groupList);
+            public Transaction.Result doTransaction(@NonNull MutableData currentData) {
+                created = currentData.getValue() == null;
+                if (created) {
+                    currentData.setValue(groupName.trim());
                 }
+                return Transaction.success(currentData);
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-
+            public void onComplete(DatabaseError error, boolean committed, DataSnapshot currentData) {
+                if (committed && created) {
+                    meta.child("lastActivity").setValue(ServerValue.TIMESTAMP);
+                }
             }
         });
-    return chatGroupMutableLiveData;
+
+        joinGroup(groupName);
     }
 
-    public void createNewChatGroup(String groupName){
-        reference.child(groupName).setValue(groupName);
+    public void joinGroup(String groupName){
+        String uid = getCurrentUserId();
+        if (uid == null) {
+            return;
+        }
+        // A no-op unless the topic is new to this device
+        subscriptions.want(groupName);
+
+        // Only the first join of a given user bumps the member count
+        String groupId = DataLayout.groupId(groupName);
+        reference.child(DataLayout.GROUP_MEMBERS).child(groupId).child(uid).runTransaction(new Transaction.Handler() {
+            boolean joined;
+
+            @NonNull
+            @Override
+            public Transaction.Result doTransaction(@NonNull MutableData currentData) {
+                joined = currentData.getValue() == null;
+                if (joined) {
+                    currentData.setValue(true);
+                }
+                return Transaction.success(currentData);
+            }
+
+            @Override
+            public void onComplete(DatabaseError error, boolean committed, DataSnapshot currentData) {
+                if (committed && joined) {
+                    reference.child(DataLayout.GROUPS).child(groupId).child(DataLayout.META)
+                            .child("memberCount").setValue(ServerValue.increment(1));
+                }
+            }
+        });
     }
 
     public MutableLiveData<List<ChatMessage>> getMessagesLiveData(String groupName) {
-        groupReference = database.getReference().child(groupName);
+        hotGroups.touch(groupName);
+
+        // The stream attaches its listener while observed and detaches after a grace period
+        MessageStream stream = messageStreams.open(groupName);
+        if (stream == null) {
+            String groupId = DataLayout.groupId(groupName);
+            stream = new MessageStream(groupName,
+                    new BucketedMessages(shards.messages(groupId), shards.buckets(groupId)),
+                    store, cacheStats, this::getCurrentUserId);
+            messageStreams.put(groupName, stream);
+        }
+        return stream;
+    }
+
+    // The UI has committed the last group list; the next one may be emitted
+    public void onGroupsShown() {
+        chatGroupMutableLiveData.onConsumed();
+    }
+
+    public void onMessagesShown(String groupName) {
+        MessageStream stream = messageStreams.get(groupName);
+        if (stream != null) {
+            stream.onConsumed();
+        }
+    }
+
+    // Null until the group list has synced, or if the user never opened the group
+    public ReadMarker getReadMarker(String groupName) {
+        return chatGroupMutableLiveData.getReadMarker(groupName);
+    }
+
+    // Moves the user's read marker forward to pushKey, never back. Only the
+    // newest message is marked: the marker's count is the group's counter,
+    // which is only right for the end of the group. The counter is read from
+    // meta at write time and the marker is updated in a transaction, so
+    // neither a stale group list nor the outbox's own count increment on
+    // the marker can move the count backwards.
+    public void markRead(String groupName, String pushKey) {
+        String uid = getCurrentUserId();
+        MessageStream stream = messageStreams.get(groupName);
+        if (uid == null || pushKey == null || stream == null || !stream.isAtTail()) {
+            return;
+        }
+        ReadMarker current = chatGroupMutableLiveData.getReadMarker(groupName);
+        if (current != null && current.getKey() != null && pushKey.compareTo(current.getKey()) <= 0) {
+            return;
+        }
+        String groupId = DataLayout.groupId(groupName);
+        DatabaseReference marker = reference.child(DataLayout.READ_MARKERS).child(uid).child(groupId);
+        reference.child(DataLayout.GROUPS).child(groupId).child(DataLayout.META).child("messageCount")
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        Long metaCount = snapshot.getValue(Long.class);
+                        advanceMarker(marker, pushKey, metaCount == null ? 0 : metaCount);
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                    }
+                });
+    }
 
-        List<ChatMessage> messageList = new ArrayList<>();
-        groupReference.addValueEventListener(new ValueEventListener() {
+    private void advanceMarker(DatabaseReference marker, String pushKey, long metaCount) {
+        marker.runTransaction(new Transaction.Handler() {
+            @NonNull
             @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                for(DataSnapshot dataSnapshot : snapshot.getChildren()){
-                    ChatMessage message = dataSnapshot.getValue(ChatMessage.class);
-                    messageList.add(message);
-                    messagesLiveData.postValue(messageList);
+            public Transaction.Result doTransaction(@NonNull MutableData currentData) {
+                ReadMarker current = currentData.getValue(ReadMarker.class);
+                if (current == null) {
+                    currentData.setValue(new ReadMarker(pushKey, metaCount));
+                    return Transaction.success(currentData);
                 }
+                if (current.getKey() != null && pushKey.compareTo(current.getKey()) <= 0) {
+                    return Transaction.abort();
+                }
+                currentData.setValue(new ReadMarker(pushKey, Math.max(current.getCount(), metaCount)));
+                return Transaction.success(currentData);
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError error) {
+            public void onComplete(DatabaseError error, boolean committed, DataSnapshot currentData) {
+            }
+        });
+    }
+
+    // Replaces the group's window with the page after the read marker;
+    // onShown gets the first unread key once it is published
+    public void jumpToFirstUnread(String groupName, MessageStore.Callback<String> onShown) {
+        ReadMarker marker = getReadMarker(groupName);
+        MessageStream stream = messageStreams.get(groupName);
+        if (marker == null || marker.getKey() == null || stream == null) {
+            return;
+        }
+        stream.jumpAfter(marker.getKey(), onShown);
+    }
+
+    public int getActiveListenerCount() {
+        return ListenerLiveData.getAttachedCount();
+    }
+
+    public CacheStats getCacheStats() {
+        return cacheStats;
+    }
+
+    // Hits are groups reopened straight from memory
+    public CacheStats getStreamCacheStats() {
+        return messageStreams.getStats();
+    }
+
+    public void loadOlderMessages(String groupName) {
+        MessageStream stream = messageStreams.get(groupName);
+        if (stream != null) {
+            stream.loadOlder();
+        }
+    }
+
+    // The group's window reaches its newest message
+    public boolean isAtTail(String groupName) {
+        MessageStream stream = messageStreams.get(groupName);
+        return stream != null && stream.isAtTail();
+    }
+
+    public void loadNewerMessages(String groupName) {
+        MessageStream stream = messageStreams.get(groupName);
+        if (stream != null) {
+            stream.loadNewer();
+        }
+    }
 
+    // The chat screen of the group is in the foreground
+    public void enterGroup(String groupName) {
+        presence.enterGroup(groupName);
+    }
+
+    public void leaveGroup(String groupName) {
+        presence.leaveGroup(groupName);
+    }
+
+    // Every keystroke may call this; Presence throttles the writes
+    public void onTyping(String groupName) {
+        presence.onTyping(groupName);
+    }
+
+    public void stopTyping(String groupName) {
+        presence.stopTyping(groupName);
+    }
+
+    public MutableLiveData<GroupPresence> getGroupPresence(String groupName) {
+        GroupPresenceLiveData liveData = groupPresence.get(groupName);
+        if (liveData == null) {
+            liveData = new GroupPresenceLiveData(
+                    reference.child(DataLayout.GROUP_PRESENCE).child(DataLayout.groupId(groupName)),
+                    this::getCurrentUserId);
+            groupPresence.put(groupName, liveData);
+        }
+        return liveData;
+    }
+
+    public void onPresenceShown(String groupName) {
+        GroupPresenceLiveData liveData = groupPresence.get(groupName);
+        if (liveData != null) {
+            liveData.onConsumed();
+        }
+    }
+
+    // Searches the messages cached on this device; groupName null searches all groups
+    public void search(String query, String groupName) {
+        int generation = ++searchGeneration;
+        store.search(query, groupName, SEARCH_LIMIT, results -> {
+            if (generation == searchGeneration) {
+                searchResults.setValue(results);
             }
         });
-        return messagesLiveData;
     }
 
-    public void sendMessage(String messageText, String chatGroup){
+    public MutableLiveData<List<MessageSearchResult>> getSearchResults() {
+        return searchResults;
+    }
 
-        DatabaseReference ref = database
-                .getReference(chatGroup);
+    public void sendMessage(String messageText, String chatGroup){
 
         if (!messageText.trim().equals("")) {
-            String senderId = FirebaseAuth.getInstance().getCurrentUser().getUid();
+            String senderId = currentUserId;
+            if (senderId == null) {
+                return;
+            }
 
             ChatMessage msg = new ChatMessage(
                     senderId,
                     messageText,
                     System.currentTimeMillis()
             );
+            // Push keys are generated locally, so the key exists before the write does
+            msg.setKey(reference.child(DataLayout.MESSAGES).push().getKey());
+            msg.setMine(true);
 
-            String randomKey = ref.push().getKey();
-            ref.child(randomKey).setValue(msg);
+            outbox.enqueue(chatGroup, msg);
+            presence.stopTyping(chatGroup);
 
-            // Send notification to all group members
-            sendNotificationToTopic(chatGroup, messageText, senderId);
+            MessageStream stream = messageStreams.get(chatGroup);
+            if (stream != null) {
+                stream.addLocal(msg);
+            }
+
+            // Group members are notified by the notification-dispatcher service
 
         }
     }
 
-    public void sendNotificationToTopic(String groupName, String messageText, String senderId) {
-        // The topic name can be the group name (replace spaces with underscores)
-        String topic = groupName.replaceAll(" ", "_");
-
-        // Send a notification to everyone subscribed to this topic
-        FirebaseMessaging.getInstance().send(new RemoteMessage.Builder(senderId + "@fcm.googleapis.com")
-                .setMessageId(Integer.toString(new Random().nextInt(100000)))
-                .addData("title", "New message in " + groupName)
-                .addData("message", messageText)
-                .addData("groupName", groupName)
-                .setTtl(3600)
-                .build());
+    public Outbox getOutbox() {
+        return outbox;
     }
 
 
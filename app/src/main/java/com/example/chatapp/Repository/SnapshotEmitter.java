@@ -0,0 +1,116 @@
+package com.example.chatapp.Repository;
+
+import java.util.function.Consumer;
+
+// Hands snapshots to the UI at most once per frame. Every submit() replaces
+// the pending snapshot, so a burst of changes between two frames reaches the
+// observers as one update carrying the newest state. After an update the
+// emitter waits until the UI reports it consumed (diffed and committed it),
+// or ACK_TIMEOUT_MS passes, before sending the next one; snapshots arriving
+// meanwhile are conflated instead of queueing diffs the UI would throw away.
+// Main thread only.
+public class SnapshotEmitter<T> {
+    // At most one update per this interval, on top of the frame alignment
+    static final long MIN_INTERVAL_MS = 16;
+    // Covers observers that go away before acknowledging
+    static final long ACK_TIMEOUT_MS = 250;
+
+    private static final long NANOS_PER_MS = 1_000_000;
+
+    // Frame callbacks, Choreographer in the app and a fake clock in tests
+    public interface FrameScheduler {
+        void postFrameCallbackDelayed(FrameCallback callback, long delayMillis);
+
+        void removeFrameCallback(FrameCallback callback);
+    }
+
+    public interface FrameCallback {
+        void doFrame(long frameTimeNanos);
+    }
+
+    private final FrameScheduler frames;
+    private final Consumer<T> sink;
+    private final FrameCallback frameCallback = this::doFrame;
+
+    private T pending;
+    private boolean hasPending;
+    private boolean frameScheduled;
+    private boolean awaitingAck;
+    private boolean emittedOnce;
+    private long lastEmitNanos;
+    private int emitted;
+    private int conflated;
+
+    public SnapshotEmitter(FrameScheduler frames, Consumer<T> sink) {
+        this.frames = frames;
+        this.sink = sink;
+    }
+
+    public void submit(T snapshot) {
+        if (hasPending) {
+            conflated++;
+        }
+        pending = snapshot;
+        hasPending = true;
+        schedule(0);
+    }
+
+    // The UI has shown the last update and can take the next one
+    public void consumed() {
+        awaitingAck = false;
+        if (hasPending) {
+            // The frame may have been pushed back to the ack timeout
+            cancelFrame();
+            schedule(0);
+        }
+    }
+
+    // Updates handed to the sink
+    public int getEmittedCount() {
+        return emitted;
+    }
+
+    // Snapshots replaced by a newer one before they were emitted
+    public int getConflatedCount() {
+        return conflated;
+    }
+
+    private void schedule(long delayMillis) {
+        if (frameScheduled) {
+            return;
+        }
+        frameScheduled = true;
+        frames.postFrameCallbackDelayed(frameCallback, delayMillis);
+    }
+
+    private void cancelFrame() {
+        if (frameScheduled) {
+            frameScheduled = false;
+            frames.removeFrameCallback(frameCallback);
+        }
+    }
+
+    private void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        if (!hasPending) {
+            return;
+        }
+        if (emittedOnce) {
+            long sinceLast = frameTimeNanos - lastEmitNanos;
+            long waitNanos = (awaitingAck ? ACK_TIMEOUT_MS : MIN_INTERVAL_MS) * NANOS_PER_MS - sinceLast;
+            if (waitNanos > 0) {
+                schedule((waitNanos + NANOS_PER_MS - 1) / NANOS_PER_MS);
+                return;
+            }
+        }
+
+        T snapshot = pending;
+        pending = null;
+        hasPending = false;
+        awaitingAck = true;
+        emittedOnce = true;
+        lastEmitNanos = frameTimeNanos;
+        emitted++;
+        sink.accept(snapshot);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.chatapp.Repository;
+
+import java.util.function.Consumer;
+
+// Turns keystrokes into typing writes. The first keystroke writes "typing",
+// further keystrokes only refresh it once REFRESH_INTERVAL_MS has passed, and
+// IDLE_TIMEOUT_MS without a keystroke, or stop(), writes "not typing". While
+// someone types non-stop that is one write per REFRESH_INTERVAL_MS whatever
+// the typing speed. Readers drop an entry EXPIRY_MS after its last refresh,
+// which covers a writer that vanished without its stop write; the longest
+// gap between two refreshes of an active typer is below that. Main thread
+// only.
+public class TypingThrottle {
+    static final long REFRESH_INTERVAL_MS = 3000;
+    static final long IDLE_TIMEOUT_MS = 5000;
+    // Write latency and clock offset error on top of the longest refresh gap
+    private static final long EXPIRY_MARGIN_MS = 2000;
+    public static final long EXPIRY_MS = REFRESH_INTERVAL_MS + IDLE_TIMEOUT_MS + EXPIRY_MARGIN_MS;
+
+    // Handler and uptime in the app, a fake clock in tests
+    public interface Timer {
+        long now();
+
+        void postDelayed(Runnable task, long delayMillis);
+
+        void removeCallbacks(Runnable task);
+    }
+
+    private final Timer timer;
+    private final Consumer<Boolean> sink;
+    private final Runnable idleCheck = this::checkIdle;
+
+    private boolean typing;
+    private boolean idleCheckScheduled;
+    private long lastWriteAt;
+    private long lastKeystrokeAt;
+    private int writes;
+
+    public TypingThrottle(Timer timer, Consumer<Boolean> sink) {
+        this.timer = timer;
+        this.sink = sink;
+    }
+
+    public void onKeystroke() {
+        long now = timer.now();
+        lastKeystrokeAt = now;
+        if (!typing || now - lastWriteAt >= REFRESH_INTERVAL_MS) {
+            typing = true;
+            write(true, now);
+        }
+        if (!idleCheckScheduled) {
+            idleCheckScheduled = true;
+            timer.postDelayed(idleCheck, IDLE_TIMEOUT_MS);
+        }
+    }
+
+    // Sent, cleared or left the group; a no-op unless typing
+    public void stop() {
+        if (idleCheckScheduled) {
+            idleCheckScheduled = false;
+            timer.removeCallbacks(idleCheck);
+        }
+        if (typing) {
+            typing = false;
+            write(false, timer.now());
+        }
+    }
+
+    public boolean isTyping() {
+        return typing;
+    }
+
+    // Writes handed to the sink, both kinds
+    public int getWriteCount() {
+        return writes;
+    }
+
+    private void checkIdle() {
+        idleCheckScheduled = false;
+        long idle = timer.now() - lastKeystrokeAt;
+        if (idle >= IDLE_TIMEOUT_MS) {
+            stop();
+            return;
+        }
+        // One pending check however many keystrokes came in between
+        idleCheckScheduled = true;
+        timer.postDelayed(idleCheck, IDLE_TIMEOUT_MS - idle);
+    }
+
+    private void write(boolean value, long now) {
+        lastWriteAt = now;
+        writes++;
+        sink.accept(value);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.chatapp.db;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.room.Database;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+@Database(entities = {MessageEntity.class, MessageFts.class, GroupEntity.class, OutboxEntity.class},
+        version = 4, exportSchema = false)
+public abstract class ChatDatabase extends RoomDatabase {
+    private static volatile ChatDatabase instance;
+
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `outbox` (`pushKey` TEXT NOT NULL, `groupName` TEXT, "
+                    + "`senderId` TEXT, `text` TEXT, `time` INTEGER NOT NULL, PRIMARY KEY(`pushKey`))");
+        }
+    };
+
+    // Same table and triggers Room creates for MessageFts, then indexes the messages already cached
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `messages_fts` USING FTS4("
+                    + "`text` TEXT, tokenize=unicode61, content=`messages`)");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_messages_fts_BEFORE_UPDATE "
+                    + "BEFORE UPDATE ON `messages` BEGIN DELETE FROM `messages_fts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_messages_fts_BEFORE_DELETE "
+                    + "BEFORE DELETE ON `messages` BEGIN DELETE FROM `messages_fts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_messages_fts_AFTER_UPDATE "
+                    + "AFTER UPDATE ON `messages` BEGIN INSERT INTO `messages_fts`(`docid`, `text`) "
+                    + "VALUES (NEW.`rowid`, NEW.`text`); END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_messages_fts_AFTER_INSERT "
+                    + "AFTER INSERT ON `messages` BEGIN INSERT INTO `messages_fts`(`docid`, `text`) "
+                    + "VALUES (NEW.`rowid`, NEW.`text`); END");
+            db.execSQL("INSERT INTO `messages_fts`(`messages_fts`) VALUES ('rebuild')");
+        }
+    };
+
+    // Outbox acknowledgements survive a restart
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `outbox` ADD COLUMN `shardAcknowledged` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `outbox` ADD COLUMN `directoryAcknowledged` INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    public abstract MessageDao messageDao();
+
+    public abstract GroupDao groupDao();
+
+    public abstract OutboxDao outboxDao();
+
+    public static ChatDatabase getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ChatDatabase.class) {
+                if (instance == null) {
+                    instance = Room.databaseBuilder(context.getApplicationContext(),
+                            ChatDatabase.class, "chat.db")
+                            .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4)
+                            .build();
+                }
+            }
+        }
+        return instance;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.chatapp.db;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.List;
+
+@Dao
+public abstract class GroupDao {
+
+    @Query("SELECT * FROM groups ORDER BY lastActivity DESC")
+    public abstract List<GroupEntity> loadAll();
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void insertAll(List<GroupEntity> groups);
+
+    @Query("DELETE FROM groups")
+    public abstract void deleteAll();
+
+    @Transaction
+    public void replaceAll(List<GroupEntity> groups) {
+        deleteAll();
+        insertAll(groups);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.chatapp.db;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+import com.example.chatapp.model.ChatGroup;
+
+@Entity(tableName = "groups")
+public class GroupEntity {
+    @PrimaryKey
+    @NonNull
+    public String groupName = "";
+    public String lastMessage;
+    public long lastActivity;
+    public long memberCount;
+
+    public static GroupEntity from(ChatGroup group) {
+        GroupEntity entity = new GroupEntity();
+        entity.groupName = group.getGroupName();
+        entity.lastMessage = group.getLastMessage();
+        entity.lastActivity = group.getLastActivity();
+        entity.memberCount = group.getMemberCount();
+        return entity;
+    }
+
+    public ChatGroup toChatGroup() {
+        ChatGroup group = new ChatGroup(groupName);
+        group.setLastMessage(lastMessage);
+        group.setLastActivity(lastActivity);
+        group.setMemberCount(memberCount);
+        return group;
+    }
+}
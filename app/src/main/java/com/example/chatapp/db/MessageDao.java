@@ -0,0 +1,36 @@
+package com.example.chatapp.db;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Upsert;
+
+import java.util.List;
+
+// Push keys sort chronologically under SQLite's binary collation,
+// so every page is a keyset query on (groupName, pushKey).
+@Dao
+public interface MessageDao {
+
+    // An upsert, not INSERT OR REPLACE: REPLACE deletes the old row without
+    // firing the triggers that keep messages_fts in sync
+    @Upsert
+    void insertAll(List<MessageEntity> messages);
+
+    @Query("DELETE FROM messages WHERE pushKey = :pushKey")
+    void delete(String pushKey);
+
+    @Query("SELECT * FROM messages WHERE groupName = :groupName ORDER BY pushKey DESC LIMIT :limit")
+    List<MessageEntity> loadLatest(String groupName, int limit);
+
+    @Query("SELECT * FROM messages WHERE groupName = :groupName AND pushKey < :beforeKey ORDER BY pushKey DESC LIMIT :limit")
+    List<MessageEntity> loadBefore(String groupName, String beforeKey, int limit);
+
+    @Query("SELECT * FROM messages WHERE groupName = :groupName AND pushKey > :afterKey ORDER BY pushKey ASC LIMIT :limit")
+    List<MessageEntity> loadAfter(String groupName, String afterKey, int limit);
+
+    @Query(MessageSearch.SEARCH_ALL)
+    List<MessageSearchResult> search(String query, int limit);
+
+    @Query(MessageSearch.SEARCH_GROUP)
+    List<MessageSearchResult> searchGroup(String query, String groupName, int limit);
+}
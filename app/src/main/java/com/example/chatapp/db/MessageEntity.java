@@ -0,0 +1,36 @@
+package com.example.chatapp.db;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import com.example.chatapp.model.ChatMessage;
+
+@Entity(tableName = "messages", indices = {@Index(value = {"groupName", "pushKey"})})
+public class MessageEntity {
+    @PrimaryKey
+    @NonNull
+    public String pushKey = "";
+    public String groupName;
+    public String senderId;
+    public String text;
+    public long time;
+
+    public static MessageEntity from(String groupName, ChatMessage message) {
+        MessageEntity entity = new MessageEntity();
+        entity.pushKey = message.getKey();
+        entity.groupName = groupName;
+        entity.senderId = message.getSenderId();
+        entity.text = message.getText();
+        entity.time = message.getTime();
+        return entity;
+    }
+
+    public ChatMessage toChatMessage() {
+        ChatMessage message = new ChatMessage(senderId, text, time);
+        message.setKey(pushKey);
+        message.convertTime();
+        return message;
+    }
+}
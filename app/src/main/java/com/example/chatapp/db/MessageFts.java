@@ -0,0 +1,14 @@
+package com.example.chatapp.db;
+
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+
+// Full-text index over messages.text. It is an external-content table: Room
+// adds triggers on `messages` that keep it in step with every insert, update
+// and delete, and the text itself is only stored once, in `messages`.
+@Fts4(contentEntity = MessageEntity.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "messages_fts")
+public class MessageFts {
+    public String text;
+}
@@ -0,0 +1,66 @@
+package com.example.chatapp.db;
+
+// SQL and query syntax for searching the local message index. Kept free of
+// Room and Android so the microbenchmark runs the exact same statements
+// against plain SQLite.
+public final class MessageSearch {
+    // Wrapped around every matched term in a snippet
+    public static final char HIGHLIGHT_START = '\u0002';
+    public static final char HIGHLIGHT_END = '\u0003';
+
+    // A one-letter prefix would merge the doclists of a large part of the vocabulary
+    static final int MIN_PREFIX_LENGTH = 2;
+
+    static final String SNIPPET = "snippet(messages_fts, char(2), char(3), '...', -1, 12)";
+
+    // The index drives the query (CROSS JOIN keeps SQLite from looping over
+    // messages and re-running the match per row) and walks it newest docid
+    // first, so LIMIT stops the scan and snippets are built for the returned
+    // rows only. Docids are the messages' rowids, i.e. the order they were
+    // cached in; the page that comes back is then sorted by push key. Sorting
+    // every match by push key instead costs hundreds of ms for common words.
+    static final String SELECT = "SELECT m.pushKey, m.groupName, m.senderId, m.time, " + SNIPPET + " AS snippet"
+            + " FROM messages_fts CROSS JOIN messages AS m ON m.rowid = messages_fts.docid"
+            + " WHERE messages_fts MATCH :query";
+
+    static final String NEWEST_FIRST = " ORDER BY messages_fts.docid DESC LIMIT :limit) ORDER BY pushKey DESC";
+
+    public static final String SEARCH_ALL = "SELECT * FROM (" + SELECT + NEWEST_FIRST;
+
+    public static final String SEARCH_GROUP = "SELECT * FROM (" + SELECT + " AND m.groupName = :groupName" + NEWEST_FIRST;
+
+    private MessageSearch() {
+    }
+
+    // Turns what the user typed into an FTS query: every word must appear,
+    // each as a prefix so results follow the typing (single letters match
+    // whole words only). Anything but letters
+    // and digits is dropped, so input can never be parsed as FTS syntax.
+    // Returns null when nothing searchable is left.
+    public static String toMatchQuery(String input) {
+        if (input == null) {
+            return null;
+        }
+        StringBuilder query = new StringBuilder();
+        int i = 0;
+        while (i < input.length()) {
+            int c = input.codePointAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                i += Character.charCount(c);
+                continue;
+            }
+            if (query.length() > 0) {
+                query.append(' ');
+            }
+            int start = query.length();
+            while (i < input.length() && Character.isLetterOrDigit(c = input.codePointAt(i))) {
+                query.appendCodePoint(c);
+                i += Character.charCount(c);
+            }
+            if (query.codePointCount(start, query.length()) >= MIN_PREFIX_LENGTH) {
+                query.append('*');
+            }
+        }
+        return query.length() == 0 ? null : query.toString();
+    }
+}
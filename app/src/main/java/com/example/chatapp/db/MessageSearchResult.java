@@ -0,0 +1,34 @@
+package com.example.chatapp.db;
+
+import android.graphics.Typeface;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.StyleSpan;
+
+// One hit from MessageSearch: where the message lives and a short excerpt of
+// its text with the matched terms marked
+public class MessageSearchResult {
+    public String pushKey;
+    public String groupName;
+    public String senderId;
+    public long time;
+    public String snippet;
+
+    // The snippet with matched terms in bold
+    public CharSequence getHighlightedSnippet() {
+        SpannableStringBuilder text = new SpannableStringBuilder();
+        int start = -1;
+        for (int i = 0; i < snippet.length(); i++) {
+            char c = snippet.charAt(i);
+            if (c == MessageSearch.HIGHLIGHT_START) {
+                start = text.length();
+            } else if (c == MessageSearch.HIGHLIGHT_END && start >= 0) {
+                text.setSpan(new StyleSpan(Typeface.BOLD), start, text.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                start = -1;
+            } else {
+                text.append(c);
+            }
+        }
+        return text;
+    }
+}
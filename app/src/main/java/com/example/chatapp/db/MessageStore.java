@@ -0,0 +1,142 @@
+package com.example.chatapp.db;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.chatapp.model.ChatGroup;
+import com.example.chatapp.model.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Room-backed copy of groups and messages. Reads run on a single disk
+// thread and report back on the main thread, where the streams live.
+public class MessageStore {
+
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    private final MessageDao messageDao;
+    private final GroupDao groupDao;
+    private final OutboxDao outboxDao;
+    private final ExecutorService diskIO = Executors.newSingleThreadExecutor();
+    // Searches get their own thread so typing is never queued behind a batch of writes
+    private final ExecutorService searchIO = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public MessageStore(Context context) {
+        ChatDatabase database = ChatDatabase.getInstance(context);
+        messageDao = database.messageDao();
+        groupDao = database.groupDao();
+        outboxDao = database.outboxDao();
+    }
+
+    public void loadLatest(String groupName, int limit, Callback<List<ChatMessage>> callback) {
+        diskIO.execute(() -> deliver(callback, newestLast(messageDao.loadLatest(groupName, limit))));
+    }
+
+    public void loadBefore(String groupName, String beforeKey, int limit, Callback<List<ChatMessage>> callback) {
+        diskIO.execute(() -> deliver(callback, newestLast(messageDao.loadBefore(groupName, beforeKey, limit))));
+    }
+
+    public void loadAfter(String groupName, String afterKey, int limit, Callback<List<ChatMessage>> callback) {
+        diskIO.execute(() -> deliver(callback, toMessages(messageDao.loadAfter(groupName, afterKey, limit))));
+    }
+
+    public void saveMessages(String groupName, List<ChatMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        List<MessageEntity> entities = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            entities.add(MessageEntity.from(groupName, message));
+        }
+        diskIO.execute(() -> messageDao.insertAll(entities));
+    }
+
+    public void deleteMessage(String pushKey) {
+        diskIO.execute(() -> messageDao.delete(pushKey));
+    }
+
+    // Local only: searches what is cached, never the server. A null groupName searches every group.
+    public void search(String input, String groupName, int limit, Callback<List<MessageSearchResult>> callback) {
+        String query = MessageSearch.toMatchQuery(input);
+        if (query == null) {
+            deliver(callback, Collections.emptyList());
+            return;
+        }
+        searchIO.execute(() -> deliver(callback, groupName == null
+                ? messageDao.search(query, limit)
+                : messageDao.searchGroup(query, groupName, limit)));
+    }
+
+    public void loadGroups(Callback<List<ChatGroup>> callback) {
+        diskIO.execute(() -> {
+            List<ChatGroup> groups = new ArrayList<>();
+            for (GroupEntity entity : groupDao.loadAll()) {
+                groups.add(entity.toChatGroup());
+            }
+            deliver(callback, groups);
+        });
+    }
+
+    public void saveGroups(List<ChatGroup> groups) {
+        List<GroupEntity> entities = new ArrayList<>(groups.size());
+        for (ChatGroup group : groups) {
+            entities.add(GroupEntity.from(group));
+        }
+        diskIO.execute(() -> groupDao.replaceAll(entities));
+    }
+
+    public void enqueueOutgoing(String groupName, ChatMessage message, Runnable onQueued) {
+        OutboxEntity entity = OutboxEntity.from(groupName, message);
+        diskIO.execute(() -> {
+            outboxDao.insert(entity);
+            mainHandler.post(onQueued);
+        });
+    }
+
+    public void loadOutgoing(int limit, Callback<List<OutboxEntity>> callback) {
+        diskIO.execute(() -> deliver(callback, outboxDao.loadPending(limit)));
+    }
+
+    // Recorded before a retry, so it only resends what is missing, also
+    // after the process was killed in between
+    public void acknowledgeOutgoing(List<String> shardKeys, List<String> directoryKeys, Runnable onSaved) {
+        diskIO.execute(() -> {
+            outboxDao.markShardAcknowledged(shardKeys);
+            outboxDao.markDirectoryAcknowledged(directoryKeys);
+            mainHandler.post(onSaved);
+        });
+    }
+
+    public void removeOutgoing(List<String> pushKeys, Callback<Integer> remaining) {
+        diskIO.execute(() -> {
+            outboxDao.delete(pushKeys);
+            deliver(remaining, outboxDao.count());
+        });
+    }
+
+    private <T> void deliver(Callback<T> callback, T result) {
+        mainHandler.post(() -> callback.onResult(result));
+    }
+
+    private List<ChatMessage> newestLast(List<MessageEntity> entities) {
+        List<ChatMessage> messages = toMessages(entities);
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    private List<ChatMessage> toMessages(List<MessageEntity> entities) {
+        List<ChatMessage> messages = new ArrayList<>(entities.size());
+        for (MessageEntity entity : entities) {
+            messages.add(entity.toChatMessage());
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.chatapp.db;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface OutboxDao {
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(OutboxEntity message);
+
+    // Push keys are generated in send order, so this is send order
+    @Query("SELECT * FROM outbox ORDER BY pushKey ASC LIMIT :limit")
+    List<OutboxEntity> loadPending(int limit);
+
+    @Query("UPDATE outbox SET shardAcknowledged = 1 WHERE pushKey IN (:pushKeys)")
+    void markShardAcknowledged(List<String> pushKeys);
+
+    @Query("UPDATE outbox SET directoryAcknowledged = 1 WHERE pushKey IN (:pushKeys)")
+    void markDirectoryAcknowledged(List<String> pushKeys);
+
+    @Query("DELETE FROM outbox WHERE pushKey IN (:pushKeys)")
+    void delete(List<String> pushKeys);
+
+    @Query("SELECT COUNT(*) FROM outbox")
+    int count();
+}
@@ -0,0 +1,43 @@
+package com.example.chatapp.db;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+import com.example.chatapp.model.ChatMessage;
+
+// A sent message that the server has not acknowledged yet
+@Entity(tableName = "outbox")
+public class OutboxEntity {
+    @PrimaryKey
+    @NonNull
+    public String pushKey = "";
+    public String groupName;
+    public String senderId;
+    public String text;
+    public long time;
+    // Which of the two writes of the message the server has acknowledged: the
+    // message in its group's shard, and the counters in the directory. When
+    // they are the same instance both are set at once.
+    @ColumnInfo(defaultValue = "0")
+    public boolean shardAcknowledged;
+    @ColumnInfo(defaultValue = "0")
+    public boolean directoryAcknowledged;
+
+    public static OutboxEntity from(String groupName, ChatMessage message) {
+        OutboxEntity entity = new OutboxEntity();
+        entity.pushKey = message.getKey();
+        entity.groupName = groupName;
+        entity.senderId = message.getSenderId();
+        entity.text = message.getText();
+        entity.time = message.getTime();
+        return entity;
+    }
+
+    public ChatMessage toChatMessage() {
+        ChatMessage message = new ChatMessage(senderId, text, time);
+        message.setKey(pushKey);
+        return message;
+    }
+}
@@ -1,12 +1,39 @@
 package com.example.chatapp.model;
 
+import com.google.firebase.database.Exclude;
+
 public class ChatGroup {
     String groupName;
+    String lastMessage;
+    long lastActivity;
+    long memberCount;
+    // Bumped by every sender in the same write as the message
+    long messageCount;
+    // Local only, from the user's read marker
+    long unreadCount;
+    String lastReadKey;
+
+    public ChatGroup() {
+    }
 
     public ChatGroup(String groupName) {
         this.groupName = groupName;
     }
 
+    // Published lists are never mutated, unread state goes on a copy
+    public ChatGroup withReadMarker(ReadMarker marker) {
+        ChatGroup group = new ChatGroup(groupName);
+        group.lastMessage = lastMessage;
+        group.lastActivity = lastActivity;
+        group.memberCount = memberCount;
+        group.messageCount = messageCount;
+        if (marker != null) {
+            group.lastReadKey = marker.getKey();
+            group.unreadCount = Math.max(0, messageCount - marker.getCount());
+        }
+        return group;
+    }
+
     public String getGroupName() {
         return groupName;
     }
@@ -14,4 +41,55 @@ public class ChatGroup {
     public void setGroupName(String groupName) {
         this.groupName = groupName;
     }
+
+    public String getLastMessage() {
+        return lastMessage;
+    }
+
+    public void setLastMessage(String lastMessage) {
+        this.lastMessage = lastMessage;
+    }
+
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
+    public void setLastActivity(long lastActivity) {
+        this.lastActivity = lastActivity;
+    }
+
+    public long getMemberCount() {
+        return memberCount;
+    }
+
+    public void setMemberCount(long memberCount) {
+        this.memberCount = memberCount;
+    }
+
+    public long getMessageCount() {
+        return messageCount;
+    }
+
+    public void setMessageCount(long messageCount) {
+        this.messageCount = messageCount;
+    }
+
+    @Exclude
+    public long getUnreadCount() {
+        return unreadCount;
+    }
+
+    @Exclude
+    public String getLastReadKey() {
+        return lastReadKey;
+    }
+
+    // Badge text, empty when there is nothing unread
+    @Exclude
+    public String getUnreadBadge() {
+        if (unreadCount <= 0) {
+            return "";
+        }
+        return unreadCount > 99 ? "99+" : String.valueOf(unreadCount);
+    }
 }
@@ -1,19 +1,19 @@
 package com.example.chatapp.model;
 
-import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.database.Exclude;
 import com.google.firebase.database.IgnoreExtraProperties;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.TimeZone;
 
 public class ChatMessage {
 
 
+    String key;
     String senderId;
     String text;
     long time;
+    String displayTime;
+    int displayTimeGeneration;
+    boolean mine;
 
     public ChatMessage(String senderId, String text, long time) {
         this.senderId = senderId;
@@ -27,6 +27,17 @@ public class ChatMessage {
     }
 
 
+    // Push key of the message node, not part of the stored value
+    @Exclude
+    public String getKey() {
+        return key;
+    }
+
+    @Exclude
+    public void setKey(String key) {
+        this.key = key;
+    }
+
     public String getSenderId() {
         return senderId;
     }
@@ -49,31 +60,34 @@ public class ChatMessage {
 
     public void setTime(long time) {
         this.time = time;
+        this.displayTime = null;
     }
 
+    // Decided once when the message is ingested, never on the bind path
+    @Exclude
     public boolean isMine() {
+        return mine;
+    }
 
-       /* if (senderId.equals(FirebaseAuth.getInstance().getCurrentUser().getUid())){
-            return true;
-        }
-
-
-
-        return false;*/
-
-        /*return senderId != null &&
-                FirebaseAuth.getInstance().getCurrentUser() != null &&
-                senderId.equals(FirebaseAuth.getInstance().getCurrentUser().getUid()) ;*/
-        return false;
+    @Exclude
+    public void setMine(boolean mine) {
+        this.mine = mine;
+    }
 
+    public void markOwnership(String currentUserId) {
+        mine = senderId != null && senderId.equals(currentUserId);
     }
 
 
+    // Called from data binding on every bind; formats once and reuses the
+    // result until the locale or time zone changes
     public String convertTime(){
-        SimpleDateFormat sdf = new SimpleDateFormat("HH:mm");
-        Date date = new Date(getTime());
-        sdf.setTimeZone(TimeZone.getDefault());
-        return sdf.format(date);
+        int generation = TimeFormatter.generation();
+        if (displayTime == null || displayTimeGeneration != generation) {
+            displayTime = TimeFormatter.format(time);
+            displayTimeGeneration = generation;
+        }
+        return displayTime;
     }
 
 
@@ -0,0 +1,143 @@
+package com.example.chatapp.model;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Where things live in the database. Shared by the app, the notification
+// dispatcher and the migration jobs.
+//
+//   groups/<id>/meta                   ChatGroup fields of one group
+//   groupMembers/<id>/<uid>            true
+//   readMarkers/<uid>/<id>             ReadMarker
+//   messages/<id>/<day>/<pushKey>      MessageCodec value
+//   messageBuckets/<id>/<day>          number of messages in that day
+//   senderDictionary/<id>              SenderDictionary list of sender uids
+//   presence/<uid>                     {online, lastSeen}, set offline by onDisconnect
+//   groupPresence/<id>/<uid>           {online, typing} while the user has the group open
+//
+// Days are UTC yyyyMMdd taken from the push key, so a key alone says which
+// bucket it is in. A bucket holds one day of one group, which keeps every
+// query and listener on a small node however old the group gets, and
+// messageBuckets lists the days that have messages so paging can skip the
+// empty ones. The messages, messageBuckets and senderDictionary trees of a
+// group may live in another database instance, picked by shardOf();
+// everything else stays in the default instance. groupPresence is
+// ephemeral: entries are removed on leave and by onDisconnect, and typing is
+// a server time readers let expire.
+public final class DataLayout {
+    public static final String GROUPS = "groups";
+    public static final String META = "meta";
+    public static final String GROUP_MEMBERS = "groupMembers";
+    public static final String READ_MARKERS = "readMarkers";
+    public static final String MESSAGES = "messages";
+    public static final String MESSAGE_BUCKETS = "messageBuckets";
+    public static final String SENDER_DICTIONARY = "senderDictionary";
+    public static final String PRESENCE = "presence";
+    public static final String GROUP_PRESENCE = "groupPresence";
+
+    // Firebase push key alphabet; the first 8 characters are the timestamp
+    private static final String PUSH_CHARS = "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+    private static final int TIMESTAMP_CHARS = 8;
+    private static final int MAX_SLUG_LENGTH = 24;
+    private static final int HASH_HEX_CHARS = 12;
+    private static final int ID_CACHE_SIZE = 512;
+
+    // Ids are looked up for every group on every list publish and every
+    // dispatched message, so recent ones are kept instead of rehashed
+    private static final Map<String, String> ids = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > ID_CACHE_SIZE;
+        }
+    };
+
+    private DataLayout() {
+    }
+
+    // Stable id for a user-entered group name: a readable slug plus a hash of
+    // the normalized name. Names that differ only in case, width or spacing
+    // are the same group; any other difference gives a different id, even if
+    // the slugs match. Ids only use [a-z0-9-], which is always a valid key.
+    public static String groupId(String name) {
+        synchronized (ids) {
+            String id = ids.get(name);
+            if (id != null) {
+                return id;
+            }
+        }
+        String id = computeGroupId(name);
+        synchronized (ids) {
+            ids.put(name, id);
+        }
+        return id;
+    }
+
+    private static String computeGroupId(String name) {
+        String normalized = normalize(name);
+        StringBuilder slug = new StringBuilder();
+        for (int i = 0; i < normalized.length() && slug.length() < MAX_SLUG_LENGTH; i++) {
+            char c = normalized.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                slug.append(c);
+            } else if (slug.length() > 0 && slug.charAt(slug.length() - 1) != '-') {
+                slug.append('-');
+            }
+        }
+        if (slug.length() == 0 || slug.charAt(slug.length() - 1) != '-') {
+            slug.append(slug.length() == 0 ? "g-" : "-");
+        }
+        return slug.append(sha256Hex(normalized), 0, HASH_HEX_CHARS).toString();
+    }
+
+    // Trimmed, inner whitespace collapsed, NFKC, lower case
+    static String normalize(String name) {
+        String trimmed = name == null ? "" : name.trim().replaceAll("\\s+", " ");
+        return Normalizer.normalize(trimmed, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    }
+
+    public static String bucketOf(String pushKey) {
+        long time = 0;
+        for (int i = 0; i < TIMESTAMP_CHARS; i++) {
+            time = time * 64 + PUSH_CHARS.indexOf(pushKey.charAt(i));
+        }
+        return bucketOf(time);
+    }
+
+    public static String bucketOf(long timeMillis) {
+        long day = Math.floorDiv(timeMillis, 86_400_000L);
+        // Civil date from days since the epoch (Howard Hinnant's algorithm), no Calendar needed
+        long z = day + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long doe = z - era * 146_097;
+        long yoe = (doe - doe / 1460 + doe / 36_524 - doe / 146_096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        long d = doy - (153 * mp + 2) / 5 + 1;
+        long m = mp < 10 ? mp + 3 : mp - 9;
+        long y = yoe + era * 400 + (m <= 2 ? 1 : 0);
+        return String.format(Locale.ROOT, "%04d%02d%02d", y, m, d);
+    }
+
+    // Database instance of a group's messages, out of `shards`
+    public static int shardOf(String groupId, int shards) {
+        return shards <= 1 ? 0 : Math.floorMod(groupId.hashCode(), shards);
+    }
+
+    private static String sha256Hex(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
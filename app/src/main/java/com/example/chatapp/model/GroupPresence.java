@@ -0,0 +1,32 @@
+package com.example.chatapp.model;
+
+// Other users who have a group open right now, and how many of them are
+// typing. Local only, built from groupPresence/<id>.
+public class GroupPresence {
+    private final int here;
+    private final int typing;
+
+    public GroupPresence(int here, int typing) {
+        this.here = here;
+        this.typing = typing;
+    }
+
+    public int getHere() {
+        return here;
+    }
+
+    public int getTyping() {
+        return typing;
+    }
+
+    // Status line under the chat title, empty when nobody else is around
+    public String getStatus() {
+        if (typing > 0) {
+            return typing == 1 ? "Someone is typing..." : typing + " people are typing...";
+        }
+        if (here > 0) {
+            return here == 1 ? "1 other here" : here + " others here";
+        }
+        return "";
+    }
+}
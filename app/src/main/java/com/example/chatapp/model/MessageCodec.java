@@ -0,0 +1,88 @@
+package com.example.chatapp.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Wire format of a message node under messages/<groupId>/<day>/<pushKey>.
+//
+//   legacy     {senderId, text, time}
+//   version 1  {s: <uid>, m: <text>, t: <time>}
+//              {r: <index>, m: <text>, t: <time>}  sender from the group's SenderDictionary
+//
+// Version 1 is recognised by its "t" key and carries no marker; later
+// versions add "v": <n>. Every reader goes through decode(), which accepts
+// both formats, so groups can be migrated while clients are running.
+// Decoding is hand-written: no reflection per message.
+public final class MessageCodec {
+    public static final int VERSION = 1;
+
+    static final String KEY_VERSION = "v";
+    static final String KEY_SENDER = "s";
+    static final String KEY_SENDER_REF = "r";
+    static final String KEY_TEXT = "m";
+    static final String KEY_TIME = "t";
+
+    private static final String LEGACY_SENDER = "senderId";
+    private static final String LEGACY_TEXT = "text";
+    private static final String LEGACY_TIME = "time";
+
+    private MessageCodec() {
+    }
+
+    public static Map<String, Object> encode(ChatMessage message) {
+        return encode(message, null);
+    }
+
+    // With a dictionary the sender is written as its index in the group
+    public static Map<String, Object> encode(ChatMessage message, SenderDictionary senders) {
+        Map<String, Object> value = new HashMap<>(4);
+        if (senders != null && message.getSenderId() != null) {
+            value.put(KEY_SENDER_REF, senders.indexOf(message.getSenderId()));
+        } else {
+            value.put(KEY_SENDER, message.getSenderId());
+        }
+        value.put(KEY_TEXT, message.getText());
+        value.put(KEY_TIME, message.getTime());
+        return value;
+    }
+
+    public static ChatMessage decode(String key, Object value) {
+        return decode(key, value, null);
+    }
+
+    // value is the untyped tree from DataSnapshot.getValue(); returns null for anything that is not a message
+    public static ChatMessage decode(String key, Object value, SenderDictionary senders) {
+        if (!(value instanceof Map)) {
+            return null;
+        }
+        Map<?, ?> map = (Map<?, ?>) value;
+        ChatMessage message;
+        if (!isLegacy(map)) {
+            String senderId = asString(map.get(KEY_SENDER));
+            Object ref = map.get(KEY_SENDER_REF);
+            if (senderId == null && ref instanceof Number && senders != null) {
+                senderId = senders.get(((Number) ref).intValue());
+            }
+            message = new ChatMessage(senderId, asString(map.get(KEY_TEXT)), asLong(map.get(KEY_TIME)));
+        } else {
+            message = new ChatMessage(asString(map.get(LEGACY_SENDER)), asString(map.get(LEGACY_TEXT)),
+                    asLong(map.get(LEGACY_TIME)));
+        }
+        message.setKey(key);
+        return message;
+    }
+
+    public static boolean isLegacy(Object value) {
+        return value instanceof Map
+                && !((Map<?, ?>) value).containsKey(KEY_TIME)
+                && !((Map<?, ?>) value).containsKey(KEY_VERSION);
+    }
+
+    private static String asString(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    private static long asLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+}
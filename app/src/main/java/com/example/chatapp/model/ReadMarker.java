@@ -0,0 +1,33 @@
+package com.example.chatapp.model;
+
+// Where a user stopped reading a group: the newest push key seen and the
+// group's messageCount at that moment. Unread is the difference between the
+// group's current count and this one, no messages have to be looked at.
+public class ReadMarker {
+    String key;
+    long count;
+
+    public ReadMarker() {
+    }
+
+    public ReadMarker(String key, long count) {
+        this.key = key;
+        this.count = count;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+}
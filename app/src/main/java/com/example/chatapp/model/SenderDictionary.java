@@ -0,0 +1,49 @@
+package com.example.chatapp.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Per-group table of sender UIDs, stored as a list at senderDictionary/<groupId>
+// in the group's message shard.
+// A 28-character UID is then written once per group instead of once per
+// message. Entries are only ever appended, so an index never changes meaning.
+public class SenderDictionary {
+    private final List<String> senders;
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    public SenderDictionary() {
+        this(new ArrayList<>());
+    }
+
+    public SenderDictionary(List<String> senders) {
+        this.senders = new ArrayList<>(senders);
+        for (int i = 0; i < this.senders.size(); i++) {
+            indexes.put(this.senders.get(i), i);
+        }
+    }
+
+    // Adds the sender if it is not in the dictionary yet
+    public synchronized int indexOf(String senderId) {
+        Integer index = indexes.get(senderId);
+        if (index == null) {
+            index = senders.size();
+            senders.add(senderId);
+            indexes.put(senderId, index);
+        }
+        return index;
+    }
+
+    public synchronized String get(int index) {
+        return index >= 0 && index < senders.size() ? senders.get(index) : null;
+    }
+
+    public synchronized int size() {
+        return senders.size();
+    }
+
+    public synchronized List<String> toList() {
+        return new ArrayList<>(senders);
+    }
+}
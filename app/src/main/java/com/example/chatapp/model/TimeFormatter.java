@@ -0,0 +1,89 @@
+package com.example.chatapp.model;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+// Shared "HH:mm" formatter for chat rows. Formatted minutes are cached, so
+// messages sent in the same minute reuse one String and a cache hit does not
+// allocate. The cache belongs to the current (locale, time zone) pair; call
+// reset() when either changes and previously formatted values go stale.
+public final class TimeFormatter {
+    private static final String PATTERN = "HH:mm";
+    private static final long MINUTE_MILLIS = 60_000;
+    // Direct-mapped, a power of two
+    private static final int CACHE_SIZE = 256;
+
+    private static final class Entry {
+        final long minute;
+        final String text;
+
+        Entry(long minute, String text) {
+            this.minute = minute;
+            this.text = text;
+        }
+    }
+
+    private static final class Config {
+        final int generation;
+        final SimpleDateFormat format;
+        final Entry[] cache = new Entry[CACHE_SIZE];
+
+        Config(int generation, SimpleDateFormat format) {
+            this.generation = generation;
+            this.format = format;
+        }
+    }
+
+    // Formatters keyed on locale and zone, switching back and forth does not rebuild them
+    private static final Map<String, SimpleDateFormat> formats = new HashMap<>();
+    private static volatile Config config = newConfig(0, Locale.getDefault(), TimeZone.getDefault());
+
+    private TimeFormatter() {
+    }
+
+    public static String format(long time) {
+        Config current = config;
+        long minute = Math.floorDiv(time, MINUTE_MILLIS);
+        int slot = (int) (minute & (CACHE_SIZE - 1));
+
+        Entry entry = current.cache[slot];
+        if (entry != null && entry.minute == minute) {
+            return entry.text;
+        }
+
+        String text;
+        synchronized (current.format) {
+            text = current.format.format(new Date(minute * MINUTE_MILLIS));
+        }
+        current.cache[slot] = new Entry(minute, text);
+        return text;
+    }
+
+    // Bumped on every reset(); lets callers tell whether a precomputed value is still valid
+    public static int generation() {
+        return config.generation;
+    }
+
+    public static void reset(Locale locale, TimeZone zone) {
+        synchronized (formats) {
+            config = newConfig(config.generation + 1, locale, zone);
+        }
+    }
+
+    private static Config newConfig(int generation, Locale locale, TimeZone zone) {
+        synchronized (formats) {
+            String key = locale.toLanguageTag() + "|" + zone.getID();
+            SimpleDateFormat format = formats.get(key);
+            if (format == null) {
+                format = new SimpleDateFormat(PATTERN, locale);
+                format.setTimeZone(zone);
+                formats.put(key, format);
+            }
+            return new Config(generation, format);
+        }
+    }
+}
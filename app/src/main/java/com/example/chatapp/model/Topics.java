@@ -0,0 +1,14 @@
+package com.example.chatapp.model;
+
+// FCM topic names for chat groups. Topics only allow [a-zA-Z0-9-_.~%], so
+// a group's topic is its DataLayout id, which is always valid and is the
+// same for every spelling of the name that maps to that group.
+public final class Topics {
+
+    private Topics() {
+    }
+
+    public static String forGroup(String groupName) {
+        return DataLayout.groupId(groupName);
+    }
+}
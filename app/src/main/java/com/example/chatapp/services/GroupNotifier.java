@@ -0,0 +1,212 @@
+package com.example.chatapp.services;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+
+import androidx.core.app.NotificationCompat;
+
+import com.example.chatapp.R;
+import com.example.chatapp.views.ChatActivity;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Collects incoming messages per group and renders one notification per
+// group plus a summary. A burst of messages is folded into a single render,
+// and a group only alerts (sound/vibration) again after REALERT_INTERVAL_MS.
+// The instance is created off the first frame, by DeferredStartup or the
+// first push; marking a chat as on screen does not need it.
+public class GroupNotifier {
+    private static final String GROUP_KEY = "com.example.chatapp.CHAT_GROUPS";
+    private static final int SUMMARY_ID = 0;
+    private static final int MAX_LINES = 5;
+    private static final long RENDER_DELAY_MS = 300;
+    private static final long REALERT_INTERVAL_MS = 30_000;
+
+    private static volatile GroupNotifier instance;
+    // Group whose chat is on screen; its messages are not notified
+    private static volatile String foregroundGroup;
+
+    private final Context context;
+    private final NotificationManager notificationManager;
+    private final String channelId;
+    private final Handler handler;
+    private final Map<String, PendingIntent> pendingIntents = new HashMap<>();
+    // Insertion order is the order groups appear in the summary
+    private final Map<String, GroupState> groups = new LinkedHashMap<>();
+    private boolean renderScheduled;
+
+    private static class GroupState {
+        final ArrayDeque<String> lines = new ArrayDeque<>();
+        int unread;
+        long lastAlertAt = -REALERT_INTERVAL_MS;
+        boolean dirty;
+    }
+
+    public static synchronized GroupNotifier getInstance(Context context) {
+        if (instance == null) {
+            instance = new GroupNotifier(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private GroupNotifier(Context context) {
+        this.context = context;
+        this.notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        this.channelId = context.getString(R.string.default_notification_channel_id);
+
+        HandlerThread thread = new HandlerThread("GroupNotifier");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+
+        // Since android Oreo notification channel is needed.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(channelId,
+                    "Chat messages",
+                    NotificationManager.IMPORTANCE_DEFAULT);
+            notificationManager.createNotificationChannel(channel);
+        }
+    }
+
+    public synchronized void add(String groupName, String messageText, int count) {
+        if (groupName.equals(foregroundGroup)) {
+            return;
+        }
+        GroupState state = groups.remove(groupName);
+        if (state == null) {
+            state = new GroupState();
+        }
+        groups.put(groupName, state);
+
+        state.lines.addLast(messageText == null ? "" : messageText);
+        while (state.lines.size() > MAX_LINES) {
+            state.lines.removeFirst();
+        }
+        state.unread += Math.max(1, count);
+        state.dirty = true;
+
+        if (!renderScheduled) {
+            renderScheduled = true;
+            handler.postDelayed(this::render, RENDER_DELAY_MS);
+        }
+    }
+
+    // Cheap enough for onResume: only an existing instance can have
+    // notifications to clear, and it does so on its own thread
+    public static void enterForeground(String groupName) {
+        foregroundGroup = groupName;
+        GroupNotifier notifier = instance;
+        if (notifier != null) {
+            notifier.handler.post(() -> notifier.clear(groupName));
+        }
+    }
+
+    public static void leaveForeground(String groupName) {
+        if (groupName.equals(foregroundGroup)) {
+            foregroundGroup = null;
+        }
+    }
+
+    public synchronized void clear(String groupName) {
+        if (groups.remove(groupName) == null) {
+            return;
+        }
+        notificationManager.cancel(notificationId(groupName));
+        if (groups.isEmpty()) {
+            notificationManager.cancel(SUMMARY_ID);
+        } else {
+            notificationManager.notify(SUMMARY_ID, buildSummary());
+        }
+    }
+
+    private synchronized void render() {
+        renderScheduled = false;
+        long now = SystemClock.elapsedRealtime();
+        for (Map.Entry<String, GroupState> entry : groups.entrySet()) {
+            GroupState state = entry.getValue();
+            if (!state.dirty) {
+                continue;
+            }
+            state.dirty = false;
+            boolean alert = now - state.lastAlertAt >= REALERT_INTERVAL_MS;
+            if (alert) {
+                state.lastAlertAt = now;
+            }
+            notificationManager.notify(notificationId(entry.getKey()), buildGroup(entry.getKey(), state, alert));
+        }
+        notificationManager.notify(SUMMARY_ID, buildSummary());
+    }
+
+    private android.app.Notification buildGroup(String groupName, GroupState state, boolean alert) {
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+        for (String line : state.lines) {
+            style.addLine(line);
+        }
+        String title = state.unread == 1
+                ? "New message in " + groupName
+                : state.unread + " new messages in " + groupName;
+
+        return new NotificationCompat.Builder(context, channelId)
+                .setSmallIcon(R.drawable.ic_stat_ic_notification)
+                .setContentTitle(title)
+                .setContentText(state.lines.peekLast())
+                .setStyle(style)
+                .setNumber(state.unread)
+                .setGroup(GROUP_KEY)
+                .setSilent(!alert)
+                .setAutoCancel(true)
+                .setContentIntent(contentIntent(groupName))
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
+                .build();
+    }
+
+    private android.app.Notification buildSummary() {
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+        int total = 0;
+        for (Map.Entry<String, GroupState> entry : groups.entrySet()) {
+            total += entry.getValue().unread;
+            style.addLine(entry.getKey() + ": " + entry.getValue().lines.peekLast());
+        }
+        style.setSummaryText(total + " new messages");
+
+        return new NotificationCompat.Builder(context, channelId)
+                .setSmallIcon(R.drawable.ic_stat_ic_notification)
+                .setContentTitle(groups.size() + " chat groups")
+                .setStyle(style)
+                .setGroup(GROUP_KEY)
+                .setGroupSummary(true)
+                .setOnlyAlertOnce(true)
+                .setSilent(true)
+                .setAutoCancel(true)
+                .build();
+    }
+
+    // One PendingIntent per group, created once and reused
+    private PendingIntent contentIntent(String groupName) {
+        PendingIntent pendingIntent = pendingIntents.get(groupName);
+        if (pendingIntent == null) {
+            Intent intent = new Intent(context, ChatActivity.class);
+            intent.putExtra("GROUP_NAME", groupName);
+            intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_NEW_TASK);
+            pendingIntent = PendingIntent.getActivity(context, notificationId(groupName), intent,
+                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+            pendingIntents.put(groupName, pendingIntent);
+        }
+        return pendingIntent;
+    }
+
+    private static int notificationId(String groupName) {
+        int id = groupName.hashCode();
+        return id == SUMMARY_ID ? 1 : id;
+    }
+}
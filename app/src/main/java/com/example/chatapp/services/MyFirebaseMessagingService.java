@@ -1,20 +1,10 @@
 package com.example.chatapp.services;
 
-import android.app.NotificationChannel;
-import android.app.NotificationManager;
-import android.app.PendingIntent;
-import android.content.Context;
-import android.content.Intent;
-import android.media.RingtoneManager;
-import android.net.Uri;
-import android.os.Build;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
-import androidx.core.app.NotificationCompat;
 
-import com.example.chatapp.R;
-import com.example.chatapp.views.ChatActivity;
+import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.messaging.FirebaseMessagingService;
 import com.google.firebase.messaging.RemoteMessage;
 
@@ -39,21 +29,40 @@ public class MyFirebaseMessagingService extends FirebaseMessagingService {
 
     private void handleNotification(RemoteMessage.Notification notification) {
         // Extract title and body from notification
-        sendNotification(notification.getTitle(),
-                notification.getBody(),
-                "default_group"); // You might want to pass group name here
+        sendNotification(notification.getBody(),
+                "default_group", 1); // You might want to pass group name here
     }
 
     private void handleDataMessage(Map<String, String> data) {
-        String title = data.get("title");
         String message = data.get("message");
         String groupName = data.get("groupName");
-        sendNotification(title, message, groupName);
+        // The group topic also reaches the sender's own devices. The dispatcher
+        // only sets senderId when every coalesced message came from that user.
+        String senderId = data.get("senderId");
+        if (senderId != null && senderId.equals(FirebaseAuth.getInstance().getUid())) {
+            return;
+        }
+        // Set by the dispatcher when it coalesced several messages into one
+        sendNotification(message, groupName, parseCount(data.get("count")));
+    }
+
+    // A payload from another sender version may carry anything here
+    private static int parseCount(String count) {
+        if (count == null) {
+            return 1;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(count.trim()));
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Bad count in message: " + count);
+            return 1;
+        }
     }
 
     @Override
     public void onNewToken(@NonNull String token) {
         Log.d(TAG, "Refreshed token: " + token);
+        TopicSubscriptionManager.getInstance(this).onTokenRefreshed();
         // If you want to send messages to this application instance or
         // manage this apps subscriptions on the server side, send the
         // FCM registration token to your app server.
@@ -66,37 +75,11 @@ public class MyFirebaseMessagingService extends FirebaseMessagingService {
         // so you can send messages to this device later
     }
 
-    private void sendNotification(String title, String messageBody, String groupName) {
-        Intent intent = new Intent(this, ChatActivity.class);
-        intent.putExtra("GROUP_NAME", groupName);
-        intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
-        PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, intent,
-                PendingIntent.FLAG_ONE_SHOT | PendingIntent.FLAG_IMMUTABLE);
-
-        String channelId = getString(R.string.default_notification_channel_id);
-        Uri defaultSoundUri = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_NOTIFICATION);
-        NotificationCompat.Builder notificationBuilder =
-                new NotificationCompat.Builder(this, channelId)
-                        .setSmallIcon(R.drawable.ic_stat_ic_notification)
-                        .setContentTitle(title)
-                        .setContentText(messageBody)
-                        .setAutoCancel(true)
-                        .setSound(defaultSoundUri)
-                        .setContentIntent(pendingIntent)
-                        .setPriority(NotificationCompat.PRIORITY_HIGH)
-                        .setVisibility(NotificationCompat.VISIBILITY_PUBLIC);
-
-        NotificationManager notificationManager =
-                (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
-
-        // Since android Oreo notification channel is needed.
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            NotificationChannel channel = new NotificationChannel(channelId,
-                    "Channel human readable title",
-                    NotificationManager.IMPORTANCE_DEFAULT);
-            notificationManager.createNotificationChannel(channel);
+    private void sendNotification(String messageBody, String groupName, int count) {
+        if (groupName == null) {
+            groupName = "default_group";
         }
-
-        notificationManager.notify(0, notificationBuilder.build());
+        // Rendering is coalesced per group, a burst of messages costs one update
+        GroupNotifier.getInstance(this).add(groupName, messageBody, count);
     }
 }
@@ -0,0 +1,199 @@
+package com.example.chatapp.services;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.chatapp.model.Topics;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.messaging.FirebaseMessaging;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+// Owns the device's FCM topic subscriptions. Callers only say which groups
+// they want; both the wanted and the confirmed subscribed sets are persisted,
+// and a debounced reconcile issues exactly the subscribe/unsubscribe calls
+// that differ between them. Failed calls are retried with exponential
+// backoff, so RPCs track membership changes rather than activity lifecycles.
+// Signing out drops every topic. Topics used to be the group name with
+// underscores for spaces; those are swapped for ids when loaded, and the
+// reconcile unsubscribes the old ones.
+public class TopicSubscriptionManager {
+    private static final String TAG = "TopicSubscriptions";
+    private static final String PREFS = "Topic_Subscriptions";
+    private static final String KEY_DESIRED = "desired";
+    private static final String KEY_SUBSCRIBED = "subscribed";
+    private static final long RECONCILE_DELAY_MS = 500;
+    private static final long MIN_BACKOFF_MS = 1000;
+    private static final long MAX_BACKOFF_MS = 60_000;
+    // What DataLayout.groupId() produces
+    private static final Pattern GROUP_ID = Pattern.compile("[a-z0-9-]+-[0-9a-f]{12}");
+
+    private static TopicSubscriptionManager instance;
+
+    private final SharedPreferences prefs;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable reconcileRunnable = this::reconcileNow;
+
+    // Only touched on the main thread
+    private final Set<String> desired;
+    private final Set<String> subscribed;
+    private boolean reconcileScheduled;
+    private boolean reconciling;
+    private long backoffMs = MIN_BACKOFF_MS;
+    // Bumped on token refresh; a reconcile sent with an older token is discarded
+    private int tokenGeneration;
+
+    public static synchronized TopicSubscriptionManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new TopicSubscriptionManager(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private TopicSubscriptionManager(Context context) {
+        prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        // getStringSet() results must not be modified, keep copies
+        desired = new HashSet<>(prefs.getStringSet(KEY_DESIRED, new HashSet<>()));
+        subscribed = new HashSet<>(prefs.getStringSet(KEY_SUBSCRIBED, new HashSet<>()));
+        migrateNameTopics();
+    }
+
+    // Best effort: a name that had underscores of its own maps to another
+    // id, and its group is wanted again under the right one when opened
+    private void migrateNameTopics() {
+        Set<String> migrated = new HashSet<>();
+        for (String topic : desired) {
+            migrated.add(GROUP_ID.matcher(topic).matches() ? topic : Topics.forGroup(topic.replace('_', ' ')));
+        }
+        if (!migrated.equals(desired)) {
+            desired.clear();
+            desired.addAll(migrated);
+            save(KEY_DESIRED, desired);
+        }
+    }
+
+    public void want(String groupName) {
+        String topic = Topics.forGroup(groupName);
+        handler.post(() -> {
+            if (desired.add(topic)) {
+                save(KEY_DESIRED, desired);
+                scheduleReconcile(RECONCILE_DELAY_MS);
+            }
+        });
+    }
+
+    // On sign-out: the next user's groups are wanted again as they are joined
+    public void dropAll() {
+        handler.post(() -> {
+            if (!desired.isEmpty()) {
+                desired.clear();
+                save(KEY_DESIRED, desired);
+                scheduleReconcile(0);
+            }
+        });
+    }
+
+    // Finishes anything a previous session left unreconciled
+    public void resume() {
+        handler.post(() -> scheduleReconcile(0));
+    }
+
+    // Subscriptions belong to the registration token; a new token starts with none
+    public void onTokenRefreshed() {
+        handler.post(() -> {
+            tokenGeneration++;
+            subscribed.clear();
+            save(KEY_SUBSCRIBED, subscribed);
+            scheduleReconcile(0);
+        });
+    }
+
+    private void scheduleReconcile(long delayMs) {
+        if (reconcileScheduled || reconciling) {
+            return;
+        }
+        reconcileScheduled = true;
+        handler.postDelayed(reconcileRunnable, delayMs);
+    }
+
+    private void reconcileNow() {
+        reconcileScheduled = false;
+        List<String> toSubscribe = new ArrayList<>();
+        List<String> toUnsubscribe = new ArrayList<>();
+        for (String topic : desired) {
+            if (!subscribed.contains(topic)) {
+                toSubscribe.add(topic);
+            }
+        }
+        for (String topic : subscribed) {
+            if (!desired.contains(topic)) {
+                toUnsubscribe.add(topic);
+            }
+        }
+        if (toSubscribe.isEmpty() && toUnsubscribe.isEmpty()) {
+            return;
+        }
+
+        // One pass sends every pending change and settles once all of them are back
+        reconciling = true;
+        int generation = tokenGeneration;
+        FirebaseMessaging messaging = FirebaseMessaging.getInstance();
+        List<Task<Void>> subscribeTasks = new ArrayList<>();
+        List<Task<Void>> unsubscribeTasks = new ArrayList<>();
+        for (String topic : toSubscribe) {
+            subscribeTasks.add(messaging.subscribeToTopic(topic));
+        }
+        for (String topic : toUnsubscribe) {
+            unsubscribeTasks.add(messaging.unsubscribeFromTopic(topic));
+        }
+        List<Task<Void>> all = new ArrayList<>(subscribeTasks);
+        all.addAll(unsubscribeTasks);
+
+        Tasks.whenAllComplete(all).addOnCompleteListener(done -> {
+            reconciling = false;
+            if (generation != tokenGeneration) {
+                // Confirmations for the old token say nothing about the new one
+                scheduleReconcile(0);
+                return;
+            }
+            boolean failed = false;
+            for (int i = 0; i < toSubscribe.size(); i++) {
+                if (subscribeTasks.get(i).isSuccessful()) {
+                    subscribed.add(toSubscribe.get(i));
+                } else {
+                    failed = true;
+                }
+            }
+            for (int i = 0; i < toUnsubscribe.size(); i++) {
+                if (unsubscribeTasks.get(i).isSuccessful()) {
+                    subscribed.remove(toUnsubscribe.get(i));
+                } else {
+                    failed = true;
+                }
+            }
+            save(KEY_SUBSCRIBED, subscribed);
+
+            if (failed) {
+                Log.w(TAG, "Topic reconcile incomplete, retrying in " + backoffMs + " ms");
+                scheduleReconcile(backoffMs);
+                backoffMs = Math.min(MAX_BACKOFF_MS, backoffMs * 2);
+                return;
+            }
+            backoffMs = MIN_BACKOFF_MS;
+            // Picks up changes made while this pass was in flight
+            scheduleReconcile(0);
+        });
+    }
+
+    private void save(String key, Set<String> topics) {
+        prefs.edit().putStringSet(key, new HashSet<>(topics)).apply();
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.chatapp.startup;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.startup.Initializer;
+
+import com.example.chatapp.Repository.FirebasePersistence;
+import com.google.firebase.database.FirebaseDatabase;
+
+import java.util.Collections;
+import java.util.List;
+
+// Lazy: not listed in the manifest, Repository asks AppInitializer for it on
+// first use. Persistence settings must be applied before anything else gets
+// the FirebaseDatabase instance, which this guarantees.
+public class DatabaseInitializer implements Initializer<FirebaseDatabase> {
+
+    @NonNull
+    @Override
+    public FirebaseDatabase create(@NonNull Context context) {
+        FirebasePersistence.configure(context);
+        return FirebaseDatabase.getInstance();
+    }
+
+    @NonNull
+    @Override
+    public List<Class<? extends Initializer<?>>> dependencies() {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.chatapp.startup;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.chatapp.services.GroupNotifier;
+import com.example.chatapp.services.TopicSubscriptionManager;
+import com.google.firebase.messaging.FirebaseMessaging;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Work that no first frame depends on. It starts once the first activity of
+// the process has drawn, and runs on a background thread: notification
+// channel, FCM token, pending topic changes. Activities queue their own non-UI work here with
+// runAfterFirstDraw().
+public class DeferredStartup implements Application.ActivityLifecycleCallbacks {
+    private static final String TAG = "DeferredStartup";
+    private static final String FCM_PREFS = "FCM_Prefs";
+    private static final String FCM_TOKEN_KEY = "fcm_token";
+
+    private static final ExecutorService background = Executors.newSingleThreadExecutor();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final Context context;
+    private boolean started;
+
+    DeferredStartup(Context context) {
+        this.context = context;
+    }
+
+    // Runs task on the main thread right after the activity's first frame
+    public static void runAfterFirstDraw(Activity activity, Runnable task) {
+        View decorView = activity.getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            private boolean drawn;
+
+            @Override
+            public void onDraw() {
+                if (drawn) {
+                    return;
+                }
+                drawn = true;
+                // Listeners cannot be removed from inside onDraw()
+                mainHandler.post(() -> {
+                    decorView.getViewTreeObserver().removeOnDrawListener(this);
+                    task.run();
+                });
+            }
+        });
+    }
+
+    public static void runInBackground(Runnable task) {
+        background.execute(task);
+    }
+
+    @Override
+    public void onActivityCreated(@NonNull Activity activity, @Nullable Bundle savedInstanceState) {
+        if (started) {
+            return;
+        }
+        started = true;
+        runAfterFirstDraw(activity, () -> {
+            Log.i(TAG, "First frame " + (SystemClock.uptimeMillis() - Process.getStartUptimeMillis())
+                    + " ms after process start");
+            runInBackground(this::run);
+        });
+    }
+
+    private void run() {
+        // Creates the notification channel
+        GroupNotifier.getInstance(context);
+        refreshToken();
+        TopicSubscriptionManager.getInstance(context).resume();
+    }
+
+    private void refreshToken() {
+        FirebaseMessaging.getInstance().getToken()
+                .addOnCompleteListener(task -> {
+                    if (!task.isSuccessful()) {
+                        Log.w(TAG, "Fetching FCM registration token failed", task.getException());
+                        return;
+                    }
+                    context.getSharedPreferences(FCM_PREFS, Context.MODE_PRIVATE)
+                            .edit()
+                            .putString(FCM_TOKEN_KEY, task.getResult())
+                            .apply();
+                });
+    }
+
+    @Override
+    public void onActivityStarted(@NonNull Activity activity) {
+    }
+
+    @Override
+    public void onActivityResumed(@NonNull Activity activity) {
+    }
+
+    @Override
+    public void onActivityPaused(@NonNull Activity activity) {
+    }
+
+    @Override
+    public void onActivityStopped(@NonNull Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(@NonNull Activity activity, @NonNull Bundle outState) {
+    }
+
+    @Override
+    public void onActivityDestroyed(@NonNull Activity activity) {
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.chatapp.startup;
+
+import android.app.Application;
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.startup.Initializer;
+
+import java.util.Collections;
+import java.util.List;
+
+// Runs from the App Startup provider and only registers DeferredStartup,
+// the work itself waits for the first frame.
+public class DeferredStartupInitializer implements Initializer<DeferredStartup> {
+
+    @NonNull
+    @Override
+    public DeferredStartup create(@NonNull Context context) {
+        Application application = (Application) context.getApplicationContext();
+        DeferredStartup deferredStartup = new DeferredStartup(application);
+        application.registerActivityLifecycleCallbacks(deferredStartup);
+        return deferredStartup;
+    }
+
+    @NonNull
+    @Override
+    public List<Class<? extends Initializer<?>>> dependencies() {
+        return Collections.emptyList();
+    }
+}
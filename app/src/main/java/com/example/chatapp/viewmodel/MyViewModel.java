@@ -8,8 +8,12 @@ import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.MutableLiveData;
 
 import com.example.chatapp.Repository.Repository;
+import com.example.chatapp.db.MessageSearchResult;
+import com.example.chatapp.db.MessageStore;
 import com.example.chatapp.model.ChatGroup;
 import com.example.chatapp.model.ChatMessage;
+import com.example.chatapp.model.GroupPresence;
+import com.example.chatapp.model.ReadMarker;
 
 import java.util.List;
 
@@ -19,36 +23,111 @@ public class MyViewModel extends AndroidViewModel {
 
     public MyViewModel(@NonNull Application application) {
         super(application);
-        repository = new Repository();
+    }
+
+    // Created on first use, so LoginActivity can draw before Firebase and Room are set up
+    private Repository repository() {
+        if (repository == null) {
+            repository = Repository.getInstance(getApplication());
+        }
+        return repository;
     }
 
     public void signUpAnonymousUser(){
         Context c = this.getApplication();
-        repository.firebaseAnonymousAuth(c);
+        repository().firebaseAnonymousAuth(c);
     }
 
     public String getCurrentUserId(){
-        return repository.getCurrentUserId();
+        return repository().getCurrentUserId();
     }
 
     public void signOut(){
-        repository.signOUT();
+        repository().signOUT();
     }
 
     public MutableLiveData<List<ChatGroup>> getGroupList(){
-        return repository.getChatGroupMutableLiveData();
+        return repository().getChatGroupMutableLiveData();
+    }
+
+    public void onGroupsShown(){
+        repository().onGroupsShown();
     }
 
     public void createNewGroup(String groupName){
-        repository.createNewChatGroup(groupName);
+        repository().createNewChatGroup(groupName);
+    }
+
+    public void joinGroup(String groupName){
+        repository().joinGroup(groupName);
     }
 
     public MutableLiveData<List<ChatMessage>> getMessageLiveData(String groupName){
-        return repository.getMessagesLiveData(groupName);
+        return repository().getMessagesLiveData(groupName);
+    }
+
+    public void onMessagesShown(String groupName){
+        repository().onMessagesShown(groupName);
+    }
+
+    public ReadMarker getReadMarker(String groupName){
+        return repository().getReadMarker(groupName);
+    }
+
+    public void markRead(String groupName, String pushKey){
+        repository().markRead(groupName, pushKey);
+    }
+
+    public void jumpToFirstUnread(String groupName, MessageStore.Callback<String> onShown){
+        repository().jumpToFirstUnread(groupName, onShown);
+    }
+
+    public void loadOlderMessages(String groupName){
+        repository().loadOlderMessages(groupName);
+    }
+
+    public boolean isAtTail(String groupName){
+        return repository().isAtTail(groupName);
+    }
+
+    public void loadNewerMessages(String groupName){
+        repository().loadNewerMessages(groupName);
+    }
+
+    public void enterGroup(String groupName){
+        repository().enterGroup(groupName);
+    }
+
+    public void leaveGroup(String groupName){
+        repository().leaveGroup(groupName);
+    }
+
+    public void onTyping(String groupName){
+        repository().onTyping(groupName);
+    }
+
+    public void stopTyping(String groupName){
+        repository().stopTyping(groupName);
+    }
+
+    public MutableLiveData<GroupPresence> getGroupPresence(String groupName){
+        return repository().getGroupPresence(groupName);
+    }
+
+    public void onPresenceShown(String groupName){
+        repository().onPresenceShown(groupName);
+    }
+
+    public void search(String query, String groupName){
+        repository().search(query, groupName);
+    }
+
+    public MutableLiveData<List<MessageSearchResult>> getSearchResults(){
+        return repository().getSearchResults();
     }
 
     public void sendMessage(String msg, String chatGroup){
-        repository.sendMessage(msg,chatGroup);
+        repository().sendMessage(msg,chatGroup);
     }
 
 }
@@ -7,62 +7,125 @@ import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.databinding.DataBindingUtil;
+import androidx.databinding.ViewDataBinding;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.chatapp.BR;
 import com.example.chatapp.R;
-import com.example.chatapp.databinding.RowChatBinding;
 
-public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.MyViewHolder> {
+public class ChatAdapter extends ListAdapter<ChatMessage, ChatAdapter.MyViewHolder> {
 
+    static final String PAYLOAD_TEXT = "text";
+
+    // Ownership is decided at ingest, so the layout is chosen per view type instead of per bind
+    private static final int VIEW_TYPE_OTHER = 0;
+    private static final int VIEW_TYPE_MINE = 1;
+
+    private static final DiffUtil.ItemCallback<ChatMessage> DIFF_CALLBACK = new DiffUtil.ItemCallback<ChatMessage>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull ChatMessage oldItem, @NonNull ChatMessage newItem) {
+            return oldItem.getKey().equals(newItem.getKey());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull ChatMessage oldItem, @NonNull ChatMessage newItem) {
+            return oldItem.getTime() == newItem.getTime()
+                    && same(oldItem.getSenderId(), newItem.getSenderId())
+                    && same(oldItem.getText(), newItem.getText());
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull ChatMessage oldItem, @NonNull ChatMessage newItem) {
+            // An edited message only needs its text swapped, not a full rebind
+            if (oldItem.getTime() == newItem.getTime()
+                    && same(oldItem.getSenderId(), newItem.getSenderId())) {
+                return PAYLOAD_TEXT;
+            }
+            return null;
+        }
+
+        private boolean same(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    };
 
-    private List<ChatMessage> chatMessageList;
     private Context context;
 
-    public ChatAdapter(List<ChatMessage> chatMessageList, Context context) {
-        this.chatMessageList = chatMessageList;
+    public ChatAdapter(Context context) {
+        super(DIFF_CALLBACK);
         this.context = context;
+        setHasStableIds(true);
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return getItem(position).isMine() ? VIEW_TYPE_MINE : VIEW_TYPE_OTHER;
     }
 
     @NonNull
     @Override
     public MyViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        int layout = viewType == VIEW_TYPE_MINE ? R.layout.row_chat_mine : R.layout.row_chat_other;
         View view = LayoutInflater.from(context)
-                .inflate(R.layout.row_chat,parent,false);
+                .inflate(layout,parent,false);
 
-        RowChatBinding binding = DataBindingUtil.bind(view);
+        ViewDataBinding binding = DataBindingUtil.bind(view);
         return new MyViewHolder(binding);
     }
 
     @Override
     public void onBindViewHolder(@NonNull MyViewHolder holder, int position) {
-        holder.getBinding().setVariable(BR.chatMessage, chatMessageList.get(position));
+        holder.getBinding().setVariable(BR.chatMessage, getItem(position));
         holder.getBinding().executePendingBindings();
     }
 
     @Override
-    public int getItemCount() {
-        return chatMessageList.size();
+    public void onBindViewHolder(@NonNull MyViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.contains(PAYLOAD_TEXT)) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        holder.messageText.setText(getItem(position).getText());
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return stableId(getItem(position).getKey());
+    }
+
+    // 64-bit FNV-1a of the push key
+    static long stableId(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
     }
 
 
     public class MyViewHolder extends RecyclerView.ViewHolder{
-        private RowChatBinding binding;
+        private ViewDataBinding binding;
+        private TextView messageText;
 
-        public MyViewHolder( RowChatBinding binding) {
+        public MyViewHolder( ViewDataBinding binding) {
             super(binding.getRoot());
             setBinding(binding);
+            messageText = binding.getRoot().findViewById(R.id.messageText);
         }
 
 
-        public RowChatBinding getBinding() {
+        public ViewDataBinding getBinding() {
             return binding;
         }
 
-        public void setBinding(RowChatBinding binding) {
+        public void setBinding(ViewDataBinding binding) {
             this.binding = binding;
         }
     }
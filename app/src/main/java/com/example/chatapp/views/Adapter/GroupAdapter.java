@@ -7,6 +7,8 @@ import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
 import androidx.databinding.DataBindingUtil;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.chatapp.R;
@@ -14,15 +16,40 @@ import com.example.chatapp.databinding.ItemCardBinding;
 import com.example.chatapp.model.ChatGroup;
 import com.example.chatapp.views.ChatActivity;
 
-import java.util.ArrayList;
+import java.util.List;
 
-public class GroupAdapter extends RecyclerView.Adapter<GroupAdapter.GroupViewHolder> {
+public class GroupAdapter extends ListAdapter<ChatGroup, GroupAdapter.GroupViewHolder> {
 
+    static final String PAYLOAD_PREVIEW = "preview";
 
-    private ArrayList<ChatGroup> groupArrayList;
+    private static final DiffUtil.ItemCallback<ChatGroup> DIFF_CALLBACK = new DiffUtil.ItemCallback<ChatGroup>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull ChatGroup oldItem, @NonNull ChatGroup newItem) {
+            return oldItem.getGroupName().equals(newItem.getGroupName());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull ChatGroup oldItem, @NonNull ChatGroup newItem) {
+            return oldItem.getLastActivity() == newItem.getLastActivity()
+                    && oldItem.getMemberCount() == newItem.getMemberCount()
+                    && oldItem.getUnreadCount() == newItem.getUnreadCount()
+                    && same(oldItem.getLastMessage(), newItem.getLastMessage());
+        }
 
-    public GroupAdapter(ArrayList<ChatGroup> groupArrayList) {
-        this.groupArrayList = groupArrayList;
+        @Override
+        public Object getChangePayload(@NonNull ChatGroup oldItem, @NonNull ChatGroup newItem) {
+            // New activity in a group only touches its preview line and badge
+            return PAYLOAD_PREVIEW;
+        }
+
+        private boolean same(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    };
+
+    public GroupAdapter() {
+        super(DIFF_CALLBACK);
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -41,13 +68,26 @@ public class GroupAdapter extends RecyclerView.Adapter<GroupAdapter.GroupViewHol
     @Override
     public void onBindViewHolder(@NonNull GroupViewHolder holder, int position) {
 
-        ChatGroup currentUser = groupArrayList.get(position);
+        ChatGroup currentUser = getItem(position);
         holder.itemCardBinding.setChatGroup(currentUser);
+        holder.itemCardBinding.executePendingBindings();
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull GroupViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.contains(PAYLOAD_PREVIEW)) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        ChatGroup group = getItem(position);
+        holder.itemCardBinding.lastMessageText.setText(group.getLastMessage());
+        holder.itemCardBinding.unreadBadge.setText(group.getUnreadBadge());
+        holder.itemCardBinding.unreadBadge.setVisibility(group.getUnreadCount() > 0 ? View.VISIBLE : View.GONE);
     }
 
     @Override
-    public int getItemCount() {
-        return groupArrayList.size();
+    public long getItemId(int position) {
+        return ChatAdapter.stableId(getItem(position).getGroupName());
     }
 
     public class GroupViewHolder extends RecyclerView.ViewHolder{
@@ -61,9 +101,12 @@ public class GroupAdapter extends RecyclerView.Adapter<GroupAdapter.GroupViewHol
             itemCardBinding.getRoot().setOnClickListener(new View.OnClickListener() {
                 @Override
                 public void onClick(View v) {
-                    int position = getAdapterPosition();
+                    int position = getBindingAdapterPosition();
+                    if (position == RecyclerView.NO_POSITION) {
+                        return;
+                    }
 
-                    ChatGroup clickedChatGroup = groupArrayList.get(position);
+                    ChatGroup clickedChatGroup = getItem(position);
 
                     Intent i = new Intent(v.getContext(), ChatActivity.class);
                     i.putExtra("GROUP_NAME",clickedChatGroup.getGroupName());
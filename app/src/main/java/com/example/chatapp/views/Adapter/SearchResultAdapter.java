@@ -0,0 +1,72 @@
+package com.example.chatapp.views.Adapter;
+
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.databinding.DataBindingUtil;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.chatapp.R;
+import com.example.chatapp.databinding.ItemSearchResultBinding;
+import com.example.chatapp.db.MessageSearchResult;
+
+public class SearchResultAdapter extends ListAdapter<MessageSearchResult, SearchResultAdapter.ResultViewHolder> {
+
+    public interface OnResultClickListener {
+        void onResultClick(MessageSearchResult result);
+    }
+
+    private static final DiffUtil.ItemCallback<MessageSearchResult> DIFF_CALLBACK = new DiffUtil.ItemCallback<MessageSearchResult>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull MessageSearchResult oldItem, @NonNull MessageSearchResult newItem) {
+            return oldItem.pushKey.equals(newItem.pushKey);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull MessageSearchResult oldItem, @NonNull MessageSearchResult newItem) {
+            // The snippet depends on the query, so a new query rebinds every row
+            return oldItem.snippet.equals(newItem.snippet);
+        }
+    };
+
+    private final OnResultClickListener listener;
+
+    public SearchResultAdapter(OnResultClickListener listener) {
+        super(DIFF_CALLBACK);
+        this.listener = listener;
+    }
+
+    @NonNull
+    @Override
+    public ResultViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        ItemSearchResultBinding binding = DataBindingUtil.inflate(
+                LayoutInflater.from(parent.getContext()), R.layout.item_search_result, parent, false);
+        return new ResultViewHolder(binding);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ResultViewHolder holder, int position) {
+        holder.binding.setResult(getItem(position));
+        holder.binding.executePendingBindings();
+    }
+
+    public class ResultViewHolder extends RecyclerView.ViewHolder {
+
+        private final ItemSearchResultBinding binding;
+
+        public ResultViewHolder(ItemSearchResultBinding binding) {
+            super(binding.getRoot());
+            this.binding = binding;
+
+            binding.getRoot().setOnClickListener(v -> {
+                int position = getBindingAdapterPosition();
+                if (position != RecyclerView.NO_POSITION) {
+                    listener.onResultClick(getItem(position));
+                }
+            });
+        }
+    }
+}
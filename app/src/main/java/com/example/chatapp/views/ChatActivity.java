@@ -1,82 +1,64 @@
 package com.example.chatapp.views;
 
 import android.Manifest;
-import android.app.ActivityManager;
-import android.app.NotificationChannel;
-import android.app.NotificationManager;
-import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Bundle;
-import android.util.Log;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.View;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
-import androidx.core.app.NotificationCompat;
-import androidx.core.app.NotificationManagerCompat;
 import androidx.core.content.ContextCompat;
 import androidx.databinding.DataBindingUtil;
 import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
+import androidx.tracing.Trace;
 
 import com.example.chatapp.R;
 import com.example.chatapp.databinding.ActivityChatBinding;
+import com.example.chatapp.model.ChatGroup;
 import com.example.chatapp.model.ChatMessage;
+import com.example.chatapp.services.GroupNotifier;
+import com.example.chatapp.startup.DeferredStartup;
 import com.example.chatapp.viewmodel.MyViewModel;
 import com.example.chatapp.views.Adapter.ChatAdapter;
-import com.google.firebase.messaging.FirebaseMessaging;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class ChatActivity extends AppCompatActivity {
     private static final String TAG = "ChatActivity";
-    private static final String FCM_PREFS = "FCM_Prefs";
-    private static final String FCM_TOKEN_KEY = "fcm_token";
-    private static final String CHANNEL_ID = "chat_notifications";
     private static final int NOTIFICATION_PERMISSION_CODE = 1001;
+    // Rows left above the first visible one before the next page is requested
+    private static final int PREFETCH_DISTANCE = 10;
+    // Measured by the macrobenchmark module: from onCreate until the first messages are on screen
+    static final String TRACE_OPEN = "ChatActivity.open";
 
     private ActivityChatBinding binding;
     private MyViewModel myViewModel;
     private ChatAdapter myAdapter;
     private RecyclerView recyclerView;
-    private List<ChatMessage> messageList = new ArrayList<>();
     private String groupName;
+    private boolean firstMessagesShown;
+    // First unread message to bring to the top once a jump has published it
+    private String pendingScrollKey;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        Trace.beginAsyncSection(TRACE_OPEN, 0);
         binding = DataBindingUtil.setContentView(this, R.layout.activity_chat);
 
-        // Initialize notification channel
-        //createNotificationChannel();
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            NotificationChannel channel = new NotificationChannel(
-                    CHANNEL_ID,
-                    "Chat Notifications",
-                    NotificationManager.IMPORTANCE_DEFAULT
-            );
-            NotificationManager manager = getSystemService(NotificationManager.class);
-            manager.createNotificationChannel(channel);
-        }
-
-        // Check and request notification permission
-        //handleNotificationPermissions();
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-            if (!checkNotificationPermission()) {
-                requestNotificationPermission();
-            }
-        }
-
         // Initialize components
         //initializeComponents();
         myViewModel = new ViewModelProvider(this).get(MyViewModel.class);
         groupName = getIntent().getStringExtra("GROUP_NAME");
+        myViewModel.joinGroup(groupName);
 
         recyclerView = binding.recyclerView;
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
@@ -86,26 +68,67 @@ public class ChatActivity extends AppCompatActivity {
 
         // Set up observers and listeners
        // setupMessageObserver();
-        myViewModel.getMessageLiveData(groupName).observe(this, chatMessages -> {
-            messageList.clear();
-            messageList.addAll(chatMessages);
-
-            if (myAdapter == null) {
-                myAdapter = new ChatAdapter(messageList, getApplicationContext());
-                recyclerView.setAdapter(myAdapter);
-            } else {
-                myAdapter.notifyDataSetChanged();
-            }
+        myAdapter = new ChatAdapter(getApplicationContext());
+        recyclerView.setAdapter(myAdapter);
 
-            if (!messageList.isEmpty()) {
-                recyclerView.smoothScrollToPosition(messageList.size() - 1);
-            }
+        myViewModel.getMessageLiveData(groupName).observe(this, chatMessages -> {
+            List<ChatMessage> previous = myAdapter.getCurrentList();
+            String previousNewestKey = previous.isEmpty() ? null : previous.get(previous.size() - 1).getKey();
+            // Measured before the diff lands, while the positions still match previous
+            boolean wasAtBottom = previous.isEmpty() || ((LinearLayoutManager) recyclerView.getLayoutManager())
+                    .findLastVisibleItemPosition() >= previous.size() - 1;
+
+            // Diffing runs in the background; older pages are inserted above the anchor row
+            myAdapter.submitList(chatMessages, () -> {
+                // Lets the stream emit its next snapshot
+                myViewModel.onMessagesShown(groupName);
+                if (chatMessages.isEmpty()) {
+                    return;
+                }
+                if (!firstMessagesShown) {
+                    firstMessagesShown = true;
+                    Trace.endAsyncSection(TRACE_OPEN, 0);
+                }
+                if (pendingScrollKey != null) {
+                    int position = indexOf(chatMessages, pendingScrollKey);
+                    if (position >= 0) {
+                        pendingScrollKey = null;
+                        ((LinearLayoutManager) recyclerView.getLayoutManager()).scrollToPositionWithOffset(position, 0);
+                        return;
+                    }
+                }
+                // Only a message past the old tail is new; a trimmed window,
+                // a loadNewer page or a jump also change the last row
+                ChatMessage newest = chatMessages.get(chatMessages.size() - 1);
+                boolean arrived = previousNewestKey == null || newest.getKey().compareTo(previousNewestKey) > 0;
+                if (!arrived || !myViewModel.isAtTail(groupName)) {
+                    return;
+                }
+                if (wasAtBottom || newest.isMine()) {
+                    recyclerView.smoothScrollToPosition(chatMessages.size() - 1);
+                    myViewModel.markRead(groupName, newest.getKey());
+                }
+            });
+        });
 
-            // Show notification for new messages
-            if (!chatMessages.isEmpty()) {
-                showMessageNotification(chatMessages.get(chatMessages.size() - 1));
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                if (dy < 0 && layoutManager.findFirstVisibleItemPosition() <= PREFETCH_DISTANCE) {
+                    myViewModel.loadOlderMessages(groupName);
+                } else if (dy > 0 && layoutManager.findLastVisibleItemPosition() >= myAdapter.getItemCount() - 1 - PREFETCH_DISTANCE) {
+                    myViewModel.loadNewerMessages(groupName);
+                }
+                if (dy > 0 && layoutManager.findLastVisibleItemPosition() == myAdapter.getItemCount() - 1) {
+                    myViewModel.markRead(groupName, myAdapter.getCurrentList().get(myAdapter.getItemCount() - 1).getKey());
+                }
             }
         });
+        setupJumpToUnread();
+        setupPresence();
+        binding.searchBTN.setOnClickListener(view -> startActivity(SearchActivity.intent(this, groupName)));
+
         //setupSendButton();
         binding.sendBTN.setOnClickListener(view -> {
             String msg = binding.edittextChatMessage.getText().toString();
@@ -115,117 +138,135 @@ public class ChatActivity extends AppCompatActivity {
             }
         });
 
-        // Handle FCM operations
-        //handleFcmOperations();
-        String topic = groupName.replaceAll(" ", "_");
-        FirebaseMessaging.getInstance().subscribeToTopic(topic)
-                .addOnCompleteListener(task -> {
-                    String logMsg = task.isSuccessful()
-                            ? "Subscribed to topic: " + topic
-                            : "Subscription failed";
-                    Log.d(TAG, logMsg);
-                });
-
-        // Verify and handle FCM token
-        verifyFcmToken();
+        // The chat is usable without it, so the prompt waits until it is on screen.
+        // The notification channel and the FCM token are handled by DeferredStartup,
+        // the group topic by TopicSubscriptionManager when the group is joined.
+        DeferredStartup.runAfterFirstDraw(this, () -> {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU && !checkNotificationPermission()) {
+                requestNotificationPermission();
+            }
+        });
     }
 
 
 
-    private boolean checkNotificationPermission() {
-        return ContextCompat.checkSelfPermission(
-                this,
-                Manifest.permission.POST_NOTIFICATIONS
-        ) == PackageManager.PERMISSION_GRANTED;
-    }
+    // Status line with who else is here and typing, from the group's small
+    // presence node. Keystrokes are reported as they happen; the repository
+    // throttles them to a write every few seconds.
+    private void setupPresence() {
+        myViewModel.getGroupPresence(groupName).observe(this, groupPresence -> {
+            String status = groupPresence.getStatus();
+            binding.presenceStatus.setText(status);
+            binding.presenceStatus.setVisibility(status.isEmpty() ? View.GONE : View.VISIBLE);
+            myViewModel.onPresenceShown(groupName);
+        });
 
-    private void requestNotificationPermission() {
-        ActivityCompat.requestPermissions(
-                this,
-                new String[]{Manifest.permission.POST_NOTIFICATIONS},
-                NOTIFICATION_PERMISSION_CODE
-        );
-    }
+        binding.edittextChatMessage.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
 
+            }
 
-    private void showMessageNotification(ChatMessage message) {
-        if (message.isMine() || !checkNotificationPermission() || isAppInForeground()) {
-            return;
-        }
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
 
-        try {
-            NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
-                    .setSmallIcon(R.drawable.ic_stat_ic_notification)
-                    .setContentTitle("New message in " + groupName)
-                    .setContentText(message.getText())
-                    .setPriority(NotificationCompat.PRIORITY_DEFAULT);
+            }
 
-            NotificationManagerCompat.from(this).notify((int) System.currentTimeMillis(), builder.build());
-        } catch (SecurityException e) {
-            Log.e(TAG, "Notification permission denied", e);
-        }
+            @Override
+            public void afterTextChanged(Editable s) {
+                if (s.length() == 0) {
+                    myViewModel.stopTyping(groupName);
+                } else {
+                    myViewModel.onTyping(groupName);
+                }
+            }
+        });
     }
 
-
-
-    private void verifyFcmToken() {
-        SharedPreferences prefs = getSharedPreferences(FCM_PREFS, MODE_PRIVATE);
-        String savedToken = prefs.getString(FCM_TOKEN_KEY, null);
-
-        if (savedToken != null) {
-            Log.d(TAG, "Using saved FCM token: " + savedToken);
-        } else {
-            fetchNewFcmToken();
+    // Offered when the group list knows of unread messages. If the first
+    // unread one is already in the window it is scrolled to, otherwise the
+    // stream replaces the window with the page starting there.
+    private void setupJumpToUnread() {
+        ChatGroup group = findGroup(groupName);
+        if (group == null || group.getUnreadCount() == 0 || group.getLastReadKey() == null) {
+            return;
         }
+        String lastReadKey = group.getLastReadKey();
+        binding.jumpToUnreadBTN.setText(group.getUnreadBadge() + " unread");
+        binding.jumpToUnreadBTN.setVisibility(View.VISIBLE);
+        binding.jumpToUnreadBTN.setOnClickListener(view -> {
+            binding.jumpToUnreadBTN.setVisibility(View.GONE);
+            List<ChatMessage> shown = myAdapter.getCurrentList();
+            int firstUnread = 0;
+            while (firstUnread < shown.size() && shown.get(firstUnread).getKey().compareTo(lastReadKey) <= 0) {
+                firstUnread++;
+            }
+            if (firstUnread > 0 && firstUnread < shown.size()) {
+                ((LinearLayoutManager) recyclerView.getLayoutManager()).scrollToPositionWithOffset(firstUnread, 0);
+                return;
+            }
+            myViewModel.jumpToFirstUnread(groupName, firstUnreadKey -> pendingScrollKey = firstUnreadKey);
+        });
     }
 
-    private void fetchNewFcmToken() {
-        FirebaseMessaging.getInstance().getToken()
-                .addOnCompleteListener(task -> {
-                    if (!task.isSuccessful()) {
-                        Log.e(TAG, "FCM token fetch failed", task.getException());
-                        Toast.makeText(this, "Failed to get FCM token", Toast.LENGTH_SHORT).show();
-                        return;
-                    }
-
-                    String token = task.getResult();
-                    Log.d(TAG, "FCM Token: " + token);
-
-                    getSharedPreferences(FCM_PREFS, MODE_PRIVATE)
-                            .edit()
-                            .putString(FCM_TOKEN_KEY, token)
-                            .apply();
-                });
+    private ChatGroup findGroup(String name) {
+        List<ChatGroup> groups = myViewModel.getGroupList().getValue();
+        if (groups != null) {
+            for (ChatGroup group : groups) {
+                if (group.getGroupName().equals(name)) {
+                    return group;
+                }
+            }
+        }
+        return null;
     }
 
-    private boolean isAppInForeground() {
-        ActivityManager am = (ActivityManager) getSystemService(ACTIVITY_SERVICE);
-        List<ActivityManager.RunningAppProcessInfo> processes = am.getRunningAppProcesses();
-        if (processes == null) return false;
-
-        for (ActivityManager.RunningAppProcessInfo process : processes) {
-            if (process.processName.equals(getPackageName()) &&
-                    process.importance == ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND) {
-                return true;
+    // Push keys are in order, so this is a binary search
+    private static int indexOf(List<ChatMessage> messages, String key) {
+        int low = 0;
+        int high = messages.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = messages.get(mid).getKey().compareTo(key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
             }
         }
-        return false;
+        return -1;
     }
 
+    private boolean checkNotificationPermission() {
+        return ContextCompat.checkSelfPermission(
+                this,
+                Manifest.permission.POST_NOTIFICATIONS
+        ) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    private void requestNotificationPermission() {
+        ActivityCompat.requestPermissions(
+                this,
+                new String[]{Manifest.permission.POST_NOTIFICATIONS},
+                NOTIFICATION_PERMISSION_CODE
+        );
+    }
+
+
     @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        if (groupName != null) {
-            FirebaseMessaging.getInstance().unsubscribeFromTopic(groupName.replaceAll(" ", "_"));
-        }
+    protected void onResume() {
+        super.onResume();
+        GroupNotifier.enterForeground(groupName);
+        myViewModel.enterGroup(groupName);
     }
 
     @Override
-    protected void onStop() {
-        super.onStop();
-        if (groupName != null) {
-            FirebaseMessaging.getInstance().unsubscribeFromTopic(groupName.replaceAll(" ", "_"));
-        }
+    protected void onPause() {
+        super.onPause();
+        GroupNotifier.leaveForeground(groupName);
+        myViewModel.leaveGroup(groupName);
     }
 
     @Override
@@ -19,6 +19,7 @@ import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
+import androidx.tracing.Trace;
 
 import com.example.chatapp.R;
 import com.example.chatapp.databinding.ActivityGroupsBinding;
@@ -26,38 +27,42 @@ import com.example.chatapp.model.ChatGroup;
 import com.example.chatapp.viewmodel.MyViewModel;
 import com.example.chatapp.views.Adapter.GroupAdapter;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class GroupsActivity extends AppCompatActivity {
-    private ArrayList<ChatGroup> chatGroupArrayList;
+    // Measured by the macrobenchmark module: from onCreate until the first groups are on screen
+    static final String TRACE_FIRST_GROUPS = "GroupsActivity.firstGroups";
+
     private RecyclerView recyclerView;
     private GroupAdapter groupAdapter;
     private ActivityGroupsBinding binding;
     private MyViewModel myViewModel;
     private Dialog chatGroupDialog;
+    private boolean firstGroupsShown;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        setContentView(R.layout.activity_groups);
-
+        Trace.beginAsyncSection(TRACE_FIRST_GROUPS, 0);
         binding = DataBindingUtil.setContentView(this, R.layout.activity_groups);
         myViewModel = new ViewModelProvider(this).get(MyViewModel.class);
 
         recyclerView = binding.recyclerView;
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
 
+        groupAdapter = new GroupAdapter();
+        recyclerView.setAdapter(groupAdapter);
+
         myViewModel.getGroupList().observe(this, new Observer<List<ChatGroup>>() {
             @Override
             public void onChanged(List<ChatGroup> chatGroups) {
-                chatGroupArrayList = new ArrayList<>();
-                chatGroupArrayList.addAll(chatGroups);
-
-                groupAdapter = new GroupAdapter(chatGroupArrayList);
-
-                recyclerView.setAdapter(groupAdapter);
-                groupAdapter.notifyDataSetChanged();
+                groupAdapter.submitList(chatGroups, () -> {
+                    myViewModel.onGroupsShown();
+                    if (!firstGroupsShown && !chatGroups.isEmpty()) {
+                        firstGroupsShown = true;
+                        Trace.endAsyncSection(TRACE_FIRST_GROUPS, 0);
+                    }
+                });
             }
         });
 
@@ -67,6 +72,8 @@ public class GroupsActivity extends AppCompatActivity {
                 showDialog();
             }
         });
+
+        binding.searchFab.setOnClickListener(view -> startActivity(SearchActivity.intent(this, null)));
     }
 
     public void showDialog(){
@@ -1,10 +1,6 @@
 package com.example.chatapp.views;
 
-import static android.content.ContentValues.TAG;
-
 import android.os.Bundle;
-import android.util.Log;
-import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
 import androidx.appcompat.app.AppCompatActivity;
@@ -17,7 +13,6 @@ import androidx.lifecycle.ViewModelProvider;
 import com.example.chatapp.R;
 import com.example.chatapp.databinding.ActivityLoginBinding;
 import com.example.chatapp.viewmodel.MyViewModel;
-import com.google.firebase.messaging.FirebaseMessaging;
 
 public class LoginActivity extends AppCompatActivity {
     MyViewModel viewModel;
@@ -25,26 +20,11 @@ public class LoginActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        setContentView(R.layout.activity_login);
 
+        // The FCM token is fetched by DeferredStartup once this screen is drawn
         viewModel = new ViewModelProvider(this).get(MyViewModel.class);
         ActivityLoginBinding activityLoginBinding = DataBindingUtil.setContentView(this, R.layout.activity_login);
         activityLoginBinding.setVModel(viewModel);
-
-        FirebaseMessaging.getInstance().getToken()
-                .addOnCompleteListener(task -> {
-                    if (!task.isSuccessful()) {
-                        Log.w(TAG, "Fetching FCM registration token failed", task.getException());
-                        return;
-                    }
-                    String token = task.getResult();
-                    Log.d(TAG, "FCM Token: " + token);
-                    Toast.makeText(LoginActivity.this, "FCM Token: " + token, Toast.LENGTH_SHORT).show();
-                    getSharedPreferences("FCM_Prefs", MODE_PRIVATE)
-                            .edit()
-                            .putString("fcm_token", token)
-                            .apply();
-                });
     }
 
 }
\ No newline at end of file
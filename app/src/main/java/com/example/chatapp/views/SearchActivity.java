@@ -0,0 +1,88 @@
+package com.example.chatapp.views;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.View;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.databinding.DataBindingUtil;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.LinearLayoutManager;
+
+import com.example.chatapp.R;
+import com.example.chatapp.databinding.ActivitySearchBinding;
+import com.example.chatapp.db.MessageSearchResult;
+import com.example.chatapp.viewmodel.MyViewModel;
+import com.example.chatapp.views.Adapter.SearchResultAdapter;
+
+// Full text search over the messages cached on this device, in every group
+// or, with GROUP_NAME, in one
+public class SearchActivity extends AppCompatActivity {
+    static final String EXTRA_GROUP_NAME = "GROUP_NAME";
+
+    private ActivitySearchBinding binding;
+    private MyViewModel myViewModel;
+    private String groupName;
+
+    // groupName null searches all groups
+    public static Intent intent(Context context, String groupName) {
+        Intent intent = new Intent(context, SearchActivity.class);
+        if (groupName != null) {
+            intent.putExtra(EXTRA_GROUP_NAME, groupName);
+        }
+        return intent;
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        binding = DataBindingUtil.setContentView(this, R.layout.activity_search);
+        myViewModel = new ViewModelProvider(this).get(MyViewModel.class);
+        groupName = getIntent().getStringExtra(EXTRA_GROUP_NAME);
+        if (groupName != null) {
+            binding.searchInput.setHint("Search " + groupName);
+        }
+
+        SearchResultAdapter adapter = new SearchResultAdapter(this::open);
+        binding.recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        binding.recyclerView.setAdapter(adapter);
+
+        // The results live in the repository, so drop the ones of an earlier search first
+        myViewModel.search("", groupName);
+        myViewModel.getSearchResults().observe(this, results -> {
+            adapter.submitList(results);
+            boolean typed = binding.searchInput.getText().toString().trim().length() > 0;
+            binding.emptyText.setVisibility(typed && results.isEmpty() ? View.VISIBLE : View.GONE);
+        });
+
+        // Every keystroke searches; results of older queries are dropped by the repository
+        binding.searchInput.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+                myViewModel.search(s.toString(), groupName);
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+            }
+        });
+    }
+
+    private void open(MessageSearchResult result) {
+        if (result.groupName.equals(groupName)) {
+            // Opened from that group's chat, which is still below
+            finish();
+            return;
+        }
+        Intent i = new Intent(this, ChatActivity.class);
+        i.putExtra("GROUP_NAME", result.groupName);
+        startActivity(i);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.chatapp.Repository;
+
+import com.example.chatapp.model.ChatMessage;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MessageWindowTest {
+
+    @Test
+    public void firstMessageLongerThanTextBuffer() {
+        MessageWindow window = new MessageWindow(100);
+        String text = repeat('a', MessageWindow.MIN_TEXT_CHARS + 44);
+        window.put(message(0, text));
+
+        assertEquals(1, window.size());
+        assertEquals(text, window.snapshot().get(0).getText());
+    }
+
+    @Test
+    public void longMessageAfterRebuild() {
+        MessageWindow window = new MessageWindow(100);
+        for (int i = 0; i < 5; i++) {
+            window.put(message(i, repeat('b', 10)));
+        }
+        // Holding a snapshot forces the next append into fresh columns
+        List<ChatMessage> before = window.snapshot();
+        String text = repeat('c', 1000);
+        window.put(message(5, text));
+
+        List<ChatMessage> after = window.snapshot();
+        assertEquals(5, before.size());
+        assertEquals(6, after.size());
+        assertEquals(text, after.get(5).getText());
+        assertEquals(repeat('b', 10), after.get(0).getText());
+    }
+
+    @Test
+    public void longMessagesAtBothEnds() {
+        MessageWindow window = new MessageWindow(100);
+        window.put(message(10, "middle"));
+        String newer = repeat('n', 2000);
+        String older = repeat('o', 3000);
+        window.put(message(11, newer));
+        window.prepend(Collections.singletonList(message(1, older)));
+
+        List<ChatMessage> snapshot = window.snapshot();
+        assertEquals(older, snapshot.get(0).getText());
+        assertEquals("middle", snapshot.get(1).getText());
+        assertEquals(newer, snapshot.get(2).getText());
+    }
+
+    @Test
+    public void snapshotReturnsTheSameMessageOnEveryGet() {
+        MessageWindow window = new MessageWindow(100);
+        window.put(message(0, "hello"));
+        List<ChatMessage> snapshot = window.snapshot();
+
+        ChatMessage first = snapshot.get(0);
+        assertSame(first, snapshot.get(0));
+        assertEquals("hello", first.getText());
+        // A newer snapshot is a different view and builds its own
+        window.put(message(1, "world"));
+        assertNotSame(first, window.snapshot().get(0));
+    }
+
+    @Test
+    public void redeliveredMessageIsANoOp() {
+        MessageWindow window = new MessageWindow(100);
+        for (int i = 0; i < 5; i++) {
+            window.put(message(i, "text " + i));
+        }
+        List<ChatMessage> before = window.snapshot();
+        window.put(message(2, "text 2"));
+        assertEquals(5, window.size());
+        assertEquals("text 2", window.snapshot().get(2).getText());
+        window.put(message(2, "edited"));
+        assertEquals("text 2", before.get(2).getText());
+        assertEquals("edited", window.snapshot().get(2).getText());
+    }
+
+    private static ChatMessage message(int i, String text) {
+        ChatMessage message = new ChatMessage("sender", text, 1_700_000_000_000L + i);
+        message.setKey(String.format("-N%08d", i));
+        return message;
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
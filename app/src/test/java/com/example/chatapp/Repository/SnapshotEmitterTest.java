@@ -0,0 +1,145 @@
+package com.example.chatapp.Repository;
+
+import com.example.chatapp.model.ChatMessage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SnapshotEmitterTest {
+    private static final long FRAME_NANOS = 16_666_667;
+
+    private FakeFrames frames;
+    private List<List<ChatMessage>> updates;
+    private SnapshotEmitter<List<ChatMessage>> emitter;
+
+    // Choreographer stand-in driven by hand
+    private static class FakeFrames implements SnapshotEmitter.FrameScheduler {
+        long nowNanos;
+        SnapshotEmitter.FrameCallback posted;
+        long dueNanos;
+
+        @Override
+        public void postFrameCallbackDelayed(SnapshotEmitter.FrameCallback callback, long delayMillis) {
+            assertNull("one frame callback at a time", posted);
+            posted = callback;
+            dueNanos = nowNanos + delayMillis * 1_000_000;
+        }
+
+        @Override
+        public void removeFrameCallback(SnapshotEmitter.FrameCallback callback) {
+            posted = null;
+        }
+
+        // Advances to the next vsync and runs the callback if it is due
+        void frame() {
+            nowNanos += FRAME_NANOS;
+            if (posted != null && nowNanos >= dueNanos) {
+                SnapshotEmitter.FrameCallback callback = posted;
+                posted = null;
+                callback.doFrame(nowNanos);
+            }
+        }
+
+        void frames(int count) {
+            for (int i = 0; i < count; i++) {
+                frame();
+            }
+        }
+    }
+
+    @Before
+    public void setUp() {
+        frames = new FakeFrames();
+        updates = new ArrayList<>();
+        emitter = new SnapshotEmitter<>(frames, updates::add);
+    }
+
+    @Test
+    public void tenThousandChildSnapshot_producesOneUpdate() {
+        // What the old per-child loop did: one post for every child of the snapshot
+        MessageWindow window = new MessageWindow(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            window.put(message(i));
+            emitter.submit(window.snapshot());
+        }
+        frames.frames(100);
+
+        assertEquals(1, updates.size());
+        assertEquals(10_000, updates.get(0).size());
+        assertEquals(key(9_999), updates.get(0).get(9_999).getKey());
+        assertEquals(9_999, emitter.getConflatedCount());
+    }
+
+    @Test
+    public void atMostOneUpdatePerFrame() {
+        for (int frame = 0; frame < 10; frame++) {
+            // Several snapshots inside one frame, the UI acknowledging at once
+            for (int i = 1; i <= 5; i++) {
+                emitter.submit(snapshot(frame * 5 + i));
+                emitter.consumed();
+            }
+            frames.frame();
+
+            assertEquals(frame + 1, updates.size());
+            // Only the newest snapshot of the frame is emitted
+            assertEquals(frame * 5 + 5, updates.get(frame).size());
+        }
+        frames.frames(5);
+
+        assertEquals(10, updates.size());
+        assertEquals(10, emitter.getEmittedCount());
+        assertEquals(40, emitter.getConflatedCount());
+    }
+
+    @Test
+    public void waitsForConsumedBeforeNextUpdate() {
+        emitter.submit(snapshot(1));
+        frames.frame();
+        emitter.submit(snapshot(2));
+        emitter.submit(snapshot(3));
+        frames.frames(5);
+        assertEquals(1, updates.size());
+
+        emitter.consumed();
+        frames.frame();
+        assertEquals(2, updates.size());
+        // The UI skips straight to the newest state
+        assertEquals(3, updates.get(1).size());
+    }
+
+    @Test
+    public void ackTimeout_releasesNextUpdate() {
+        emitter.submit(snapshot(1));
+        frames.frame();
+        emitter.submit(snapshot(2));
+
+        int framesPerTimeout = (int) (SnapshotEmitter.ACK_TIMEOUT_MS * 1_000_000 / FRAME_NANOS) + 1;
+        frames.frames(framesPerTimeout - 1);
+        assertEquals(1, updates.size());
+        frames.frames(2);
+        assertEquals(2, updates.size());
+    }
+
+    private static List<ChatMessage> snapshot(int size) {
+        List<ChatMessage> messages = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            messages.add(message(i));
+        }
+        return messages;
+    }
+
+    private static ChatMessage message(int i) {
+        ChatMessage message = new ChatMessage("sender" + (i % 7), "message " + i, 1_700_000_000_000L + i);
+        message.setKey(key(i));
+        return message;
+    }
+
+    private static String key(int i) {
+        return String.format("-N%08d", i);
+    }
+}
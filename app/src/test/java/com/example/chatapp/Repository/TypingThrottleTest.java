@@ -0,0 +1,141 @@
+package com.example.chatapp.Repository;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TypingThrottleTest {
+    private FakeTimer timer;
+    private List<Boolean> writes;
+    private TypingThrottle throttle;
+
+    // Handler stand-in with a clock advanced by hand
+    private static class FakeTimer implements TypingThrottle.Timer {
+        long now;
+        Runnable task;
+        long dueAt;
+
+        @Override
+        public long now() {
+            return now;
+        }
+
+        @Override
+        public void postDelayed(Runnable task, long delayMillis) {
+            assertNull("one pending task at a time", this.task);
+            this.task = task;
+            dueAt = now + delayMillis;
+        }
+
+        @Override
+        public void removeCallbacks(Runnable task) {
+            this.task = null;
+        }
+
+        void advance(long millis) {
+            long until = now + millis;
+            while (task != null && dueAt <= until) {
+                now = dueAt;
+                Runnable due = task;
+                task = null;
+                due.run();
+            }
+            now = until;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        timer = new FakeTimer();
+        writes = new ArrayList<>();
+        throttle = new TypingThrottle(timer, writes::add);
+    }
+
+    @Test
+    public void steadyTyper_writesAtMostOncePerRefreshInterval() {
+        // 10 keystrokes a second for a minute
+        long durationMs = 60_000;
+        for (long t = 0; t < durationMs; t += 100) {
+            throttle.onKeystroke();
+            timer.advance(100);
+        }
+        double writesPerSecond = writes.size() * 1000.0 / durationMs;
+
+        // 20 writes in 60 s, 0.33 writes/s, against 10 keystrokes/s
+        assertEquals(durationMs / TypingThrottle.REFRESH_INTERVAL_MS, writes.size());
+        assertEquals(1000.0 / TypingThrottle.REFRESH_INTERVAL_MS, writesPerSecond, 1e-9);
+        assertFalse(writes.contains(false));
+    }
+
+    @Test
+    public void burstyTyper_staysUnderThrottleAndRefreshesBeforeExpiry() {
+        // Bursts of fast keystrokes with pauses just under the idle timeout
+        long cycleMs = 20 * 50 + TypingThrottle.IDLE_TIMEOUT_MS - 100;
+        long lastTrue = 0;
+        long longestGap = 0;
+        long durationMs = 0;
+        for (int burst = 0; burst < 30; burst++) {
+            for (int key = 0; key < 20; key++) {
+                int before = writes.size();
+                throttle.onKeystroke();
+                if (writes.size() > before) {
+                    longestGap = Math.max(longestGap, timer.now - lastTrue);
+                    lastTrue = timer.now;
+                }
+                timer.advance(50);
+                durationMs += 50;
+            }
+            timer.advance(TypingThrottle.IDLE_TIMEOUT_MS - 100);
+            durationMs += TypingThrottle.IDLE_TIMEOUT_MS - 100;
+        }
+        double writesPerSecond = writes.size() * 1000.0 / durationMs;
+
+        // One refresh at the start of each burst: 30 writes in 177 s, 0.17 writes/s
+        assertFalse("never went idle", writes.contains(false));
+        assertEquals(30, writes.size());
+        assertEquals(1000.0 / cycleMs, writesPerSecond, 1e-9);
+        assertTrue(writesPerSecond <= 1000.0 / TypingThrottle.REFRESH_INTERVAL_MS);
+        // The longest gap is one burst cycle, 5.9 s, inside the 10 s expiry
+        assertEquals(cycleMs, longestGap);
+        assertTrue(longestGap < TypingThrottle.EXPIRY_MS);
+    }
+
+    @Test
+    public void idleTimeout_writesNotTypingOnce() {
+        throttle.onKeystroke();
+        timer.advance(1000);
+        throttle.onKeystroke();
+        timer.advance(TypingThrottle.IDLE_TIMEOUT_MS - 1);
+        assertEquals(1, writes.size());
+
+        timer.advance(1);
+        assertEquals(2, writes.size());
+        assertEquals(Boolean.FALSE, writes.get(1));
+        assertFalse(throttle.isTyping());
+
+        timer.advance(60_000);
+        assertEquals(2, writes.size());
+    }
+
+    @Test
+    public void stop_writesOnlyWhileTyping() {
+        throttle.stop();
+        assertTrue(writes.isEmpty());
+
+        throttle.onKeystroke();
+        throttle.stop();
+        throttle.stop();
+        assertEquals(2, writes.size());
+        assertNull("idle check cancelled", timer.task);
+
+        // Typing again after a send is shown at once
+        throttle.onKeystroke();
+        assertEquals(3, writes.size());
+        assertEquals(Boolean.TRUE, writes.get(2));
+        assertEquals(3, throttle.getWriteCount());
+    }
+}
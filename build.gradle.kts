@@ -3,4 +3,5 @@ plugins {
     alias(libs.plugins.android.application) apply false
 
     id("com.google.gms.google-services") version "4.4.3" apply false
+    id("androidx.baselineprofile") version "1.3.4" apply false
 }
\ No newline at end of file
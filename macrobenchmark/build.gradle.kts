@@ -0,0 +1,50 @@
+plugins {
+    id("com.android.test")
+    id("androidx.baselineprofile")
+}
+
+android {
+    namespace = "com.example.chatapp.macrobenchmark"
+    compileSdk = 35
+
+    defaultConfig {
+        minSdk = 28
+        targetSdk = 35
+
+        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+    }
+
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_11
+        targetCompatibility = JavaVersion.VERSION_11
+    }
+
+    targetProjectPath = ":app"
+    experimentalProperties["android.experimental.self-instrumenting"] = true
+}
+
+// ./gradlew :app:generateBaselineProfile
+baselineProfile {
+    useConnectedDevices = true
+}
+
+dependencies {
+    implementation("androidx.test.ext:junit:1.2.1")
+    implementation("androidx.test.uiautomator:uiautomator:2.3.0")
+    implementation("androidx.benchmark:benchmark-macro-junit4:1.3.4")
+}
+
+// ./gradlew :macrobenchmark:connectedBenchmarkReleaseAndroidTest :macrobenchmark:archiveBenchmarkResults
+// Keeps every run's JSON under results/<git revision>/ so builds can be compared
+val gitRevision = providers.exec {
+    commandLine("git", "rev-parse", "--short", "HEAD")
+}.standardOutput.asText.map { it.trim() }
+
+tasks.register<Copy>("archiveBenchmarkResults") {
+    from(layout.buildDirectory.dir("outputs/connected_android_test_additional_output")) {
+        include("**/*benchmarkData.json")
+    }
+    into(gitRevision.map { layout.projectDirectory.dir("results/$it") })
+    eachFile { path = name }
+    includeEmptyDirs = false
+}
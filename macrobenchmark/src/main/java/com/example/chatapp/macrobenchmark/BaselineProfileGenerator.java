@@ -0,0 +1,33 @@
+package com.example.chatapp.macrobenchmark;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import kotlin.Unit;
+
+// Records the classes and methods used on startup, opening a chat and
+// scrolling it. ./gradlew :app:generateBaselineProfile runs this and writes
+// the result into the app module.
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+
+    @Rule
+    public BaselineProfileRule baselineProfileRule = new BaselineProfileRule();
+
+    @Test
+    public void generate() {
+        baselineProfileRule.collect(ChatJourneys.PACKAGE, scope -> {
+            ChatJourneys.grantNotifications(scope);
+            scope.pressHome();
+            scope.startActivityAndWait();
+            ChatJourneys.signIn(scope);
+            ChatJourneys.openGroup(scope, ChatJourneys.LARGE_GROUP);
+            ChatJourneys.flingChat(scope);
+            return Unit.INSTANCE;
+        });
+    }
+}
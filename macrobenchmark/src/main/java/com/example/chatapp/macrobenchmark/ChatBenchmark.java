@@ -0,0 +1,67 @@
+package com.example.chatapp.macrobenchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import kotlin.Unit;
+
+// Opening the 5,000-message group and flinging through its history.
+@RunWith(AndroidJUnit4.class)
+public class ChatBenchmark {
+    private static final int ITERATIONS = 5;
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    @Test
+    public void openChat() {
+        benchmarkRule.measureRepeated(
+                ChatJourneys.PACKAGE,
+                Collections.singletonList(
+                        new TraceSectionMetric(ChatJourneys.TRACE_CHAT_OPEN, TraceSectionMetric.Mode.First.INSTANCE)),
+                new CompilationMode.Partial(BaselineProfileMode.Require),
+                null,
+                ITERATIONS,
+                scope -> {
+                    ChatJourneys.grantNotifications(scope);
+                    scope.startActivityAndWait();
+                    ChatJourneys.signIn(scope);
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    ChatJourneys.openGroup(scope, ChatJourneys.LARGE_GROUP);
+                    return Unit.INSTANCE;
+                });
+    }
+
+    @Test
+    public void flingLargeChat() {
+        benchmarkRule.measureRepeated(
+                ChatJourneys.PACKAGE,
+                Collections.singletonList(new FrameTimingMetric()),
+                new CompilationMode.Partial(BaselineProfileMode.Require),
+                null,
+                ITERATIONS,
+                scope -> {
+                    ChatJourneys.grantNotifications(scope);
+                    scope.startActivityAndWait();
+                    ChatJourneys.signIn(scope);
+                    ChatJourneys.openGroup(scope, ChatJourneys.LARGE_GROUP);
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    ChatJourneys.flingChat(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.chatapp.macrobenchmark;
+
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Direction;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+import java.io.IOException;
+
+// UI steps shared by the benchmarks and the Baseline Profile generator
+final class ChatJourneys {
+    static final String PACKAGE = "com.example.chatapp";
+    // Holds 5,000 messages, seeded with ./gradlew :migration:seedBenchmarkGroup
+    static final String LARGE_GROUP = "benchmark-5000";
+
+    // Must match the trace section names in the app
+    static final String TRACE_FIRST_GROUPS = "GroupsActivity.firstGroups";
+    static final String TRACE_CHAT_OPEN = "ChatActivity.open";
+
+    private static final long TIMEOUT_MS = 10_000;
+    private static final int FLINGS = 10;
+
+    private ChatJourneys() {
+    }
+
+    // Keeps the permission prompt from covering ChatActivity
+    static void grantNotifications(MacrobenchmarkScope scope) {
+        try {
+            scope.getDevice().executeShellCommand("pm grant " + PACKAGE + " android.permission.POST_NOTIFICATIONS");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // LoginActivity to GroupsActivity with at least one group on screen
+    static void signIn(MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        device.wait(Until.findObject(By.res(PACKAGE, "button_auth")), TIMEOUT_MS).click();
+        device.wait(Until.hasObject(By.res(PACKAGE, "lastMessageText")), TIMEOUT_MS);
+    }
+
+    static void openGroup(MacrobenchmarkScope scope, String groupName) {
+        UiDevice device = scope.getDevice();
+        device.wait(Until.findObject(By.text(groupName)), TIMEOUT_MS).click();
+        device.wait(Until.hasObject(By.res(PACKAGE, "messageText")), TIMEOUT_MS);
+    }
+
+    // Back through history and down to the newest message again
+    static void flingChat(MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        UiObject2 list = device.findObject(By.res(PACKAGE, "recyclerView"));
+        // Keeps the gesture clear of the system navigation areas
+        list.setGestureMargin(device.getDisplayWidth() / 5);
+        for (int i = 0; i < FLINGS; i++) {
+            list.fling(Direction.UP);
+            device.waitForIdle();
+        }
+        for (int i = 0; i < FLINGS; i++) {
+            list.fling(Direction.DOWN);
+            device.waitForIdle();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.chatapp.macrobenchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import kotlin.Unit;
+
+// Launch of LoginActivity and the step from sign-in to the first groups on
+// screen, with and without the Baseline Profile.
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+    private static final int ITERATIONS = 10;
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    @Test
+    public void coldStartupNoCompilation() {
+        startup(StartupMode.COLD, new CompilationMode.None());
+    }
+
+    @Test
+    public void coldStartupBaselineProfile() {
+        startup(StartupMode.COLD, new CompilationMode.Partial(BaselineProfileMode.Require));
+    }
+
+    @Test
+    public void warmStartupBaselineProfile() {
+        startup(StartupMode.WARM, new CompilationMode.Partial(BaselineProfileMode.Require));
+    }
+
+    private void startup(StartupMode startupMode, CompilationMode compilationMode) {
+        benchmarkRule.measureRepeated(
+                ChatJourneys.PACKAGE,
+                Arrays.asList(new StartupTimingMetric(),
+                        new TraceSectionMetric(ChatJourneys.TRACE_FIRST_GROUPS, TraceSectionMetric.Mode.First.INSTANCE)),
+                compilationMode,
+                startupMode,
+                ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait();
+                    ChatJourneys.signIn(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -0,0 +1,55 @@
+plugins {
+    java
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// The per-message hot paths are plain Java, so they are compiled straight
+// from the app sources and measured on the JVM, off-device. Firebase itself
+// is replaced by FakeDatabase, which builds the value trees it would deliver.
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include("com/example/chatapp/model/**")
+            include("com/example/chatapp/Repository/MessageWindow.java")
+            include("com/example/chatapp/db/MessageSearch.java")
+        }
+    }
+}
+
+dependencies {
+    // Provides the com.google.firebase.database annotations the model classes use
+    implementation("com.google.firebase:firebase-admin:9.3.0")
+    jmh("org.openjdk.jol:jol-core:0.17")
+    // SQLite with FTS4, to run the search statements Room uses
+    jmh("org.xerial:sqlite-jdbc:3.46.1.3")
+}
+
+// ./gradlew :microbenchmark:jmh
+jmh {
+    warmupIterations.set(2)
+    iterations.set(5)
+    warmup.set("2s")
+    timeOnIteration.set("2s")
+    fork.set(1)
+    // Room for the 1M-message snapshots
+    jvmArgs.set(listOf("-Xmx4g"))
+    profilers.set(listOf("gc"))
+    resultFormat.set("JSON")
+}
+
+// ./gradlew :microbenchmark:memoryBenchmark
+tasks.register<JavaExec>("memoryBenchmark") {
+    description = "Compares retained heap of the message window layouts."
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("com.example.chatapp.benchmark.WindowMemoryBenchmark")
+    jvmArgs("-Xmx4g", "-Djdk.attach.allowAttachSelf=true")
+}
+
+// One class at a time: ./gradlew :microbenchmark:jmh -PjmhInclude=SearchBenchmark
+providers.gradleProperty("jmhInclude").orNull?.let { jmh.includes.set(listOf(it)) }
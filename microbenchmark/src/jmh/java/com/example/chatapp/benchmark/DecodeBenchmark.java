@@ -0,0 +1,79 @@
+package com.example.chatapp.benchmark;
+
+import com.example.chatapp.model.ChatMessage;
+import com.example.chatapp.model.MessageCodec;
+import com.google.firebase.database.utilities.encoding.CustomClassMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// One op decodes a whole group snapshot into ChatMessages, the work
+// MessageStream's decode stage does off the main thread. Multiply the
+// score by the group size for messages per second.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DecodeBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int messages;
+
+    private Map<String, Object> legacyGroup;
+    private Map<String, Object> compactGroup;
+
+    @Setup
+    public void setUp() {
+        legacyGroup = FakeDatabase.group(messages, true, 42);
+        compactGroup = FakeDatabase.group(messages, false, 42);
+    }
+
+    // getValue(ChatMessage.class) on legacy nodes: bean mapping through reflection
+    @Benchmark
+    public List<ChatMessage> reflectionLegacy() {
+        List<ChatMessage> result = new ArrayList<>(messages);
+        for (Map.Entry<String, Object> child : legacyGroup.entrySet()) {
+            ChatMessage message = CustomClassMapper.convertToCustomClass(child.getValue(), ChatMessage.class);
+            message.setKey(child.getKey());
+            result.add(message);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<ChatMessage> codecLegacy() {
+        return decode(legacyGroup, false);
+    }
+
+    @Benchmark
+    public List<ChatMessage> codecCompact() {
+        return decode(compactGroup, false);
+    }
+
+    // What MessageStream's decode stage does per message: map, then format the time
+    @Benchmark
+    public List<ChatMessage> codecCompactWithTime() {
+        return decode(compactGroup, true);
+    }
+
+    private List<ChatMessage> decode(Map<String, Object> group, boolean formatTime) {
+        List<ChatMessage> result = new ArrayList<>(messages);
+        for (Map.Entry<String, Object> child : group.entrySet()) {
+            ChatMessage message = MessageCodec.decode(child.getKey(), child.getValue());
+            if (formatTime) {
+                message.convertTime();
+            }
+            result.add(message);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.chatapp.benchmark;
+
+import com.example.chatapp.model.ChatMessage;
+import com.example.chatapp.model.MessageCodec;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+// Stands in for the Firebase data layer: builds the untyped value trees that
+// DataSnapshot.getValue() hands to the app (Maps of String, Long and nested
+// Maps, keyed by push keys in chronological order). Seeded, so every run sees
+// the same data.
+final class FakeDatabase {
+    // Alphabet and layout of Firebase push keys: 8 timestamp chars, 12 random chars
+    private static final String PUSH_CHARS = "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+    private static final long START_TIME = 1_700_000_000_000L;
+    private static final int SENDERS = 50;
+
+    private FakeDatabase() {
+    }
+
+    // /<groupName>: messages in the compact wire format, or legacy when asked
+    static Map<String, Object> group(int messages, boolean legacy, long seed) {
+        Random random = new Random(seed);
+        Map<String, Object> group = new LinkedHashMap<>();
+        long time = START_TIME;
+        for (int i = 0; i < messages; i++) {
+            time += random.nextInt(20_000);
+            ChatMessage message = new ChatMessage("sender" + random.nextInt(SENDERS), text(random, i), time);
+            group.put(pushKey(time, random), legacy ? legacyValue(message) : MessageCodec.encode(message));
+        }
+        return group;
+    }
+
+    // /groupIndex: one {groupName, lastMessage, lastActivity, memberCount} per group
+    static Map<String, Object> groupIndex(int groups, long seed) {
+        Random random = new Random(seed);
+        Map<String, Object> index = new LinkedHashMap<>();
+        for (int i = 0; i < groups; i++) {
+            String name = "group " + i;
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("groupName", name);
+            entry.put("lastMessage", text(random, i));
+            entry.put("lastActivity", START_TIME + random.nextInt(Integer.MAX_VALUE));
+            entry.put("memberCount", (long) (2 + random.nextInt(50)));
+            index.put(name, entry);
+        }
+        return index;
+    }
+
+    static String pushKey(long time, Random random) {
+        char[] key = new char[20];
+        for (int i = 7; i >= 0; i--) {
+            key[i] = PUSH_CHARS.charAt((int) (time % 64));
+            time /= 64;
+        }
+        for (int i = 8; i < 20; i++) {
+            key[i] = PUSH_CHARS.charAt(random.nextInt(64));
+        }
+        return new String(key);
+    }
+
+    private static Map<String, Object> legacyValue(ChatMessage message) {
+        Map<String, Object> value = new HashMap<>();
+        value.put("senderId", message.getSenderId());
+        value.put("text", message.getText());
+        value.put("time", message.getTime());
+        return value;
+    }
+
+    private static String text(Random random, int i) {
+        return random.nextInt(4) == 0 ? "message number " + i + " with a somewhat longer body" : "message " + i;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.chatapp.benchmark;
+
+import com.example.chatapp.model.ChatGroup;
+import com.google.firebase.database.utilities.encoding.CustomClassMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// One op turns a /groupIndex snapshot into the sorted group list, as
+// GroupListLiveData does on every index change.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GroupIndexBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int groups;
+
+    private Map<String, Object> index;
+
+    @Setup
+    public void setUp() {
+        index = FakeDatabase.groupIndex(groups, 42);
+    }
+
+    @Benchmark
+    public List<ChatGroup> map() {
+        List<ChatGroup> groupList = new ArrayList<>(groups);
+        for (Map.Entry<String, Object> child : index.entrySet()) {
+            ChatGroup group = CustomClassMapper.convertToCustomClass(child.getValue(), ChatGroup.class);
+            group.setGroupName(child.getKey());
+            groupList.add(group);
+        }
+        return groupList;
+    }
+
+    @Benchmark
+    public List<ChatGroup> mapAndSort() {
+        List<ChatGroup> groupList = map();
+        Collections.sort(groupList, (a, b) -> Long.compare(b.getLastActivity(), a.getLastActivity()));
+        return groupList;
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.chatapp.benchmark;
+
+import com.example.chatapp.db.MessageSearch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Local message search over a cache of 500k messages, on plain SQLite with
+// the schema Room creates (messages, the messages_fts external-content index
+// and its sync triggers) and the exact statements MessageDao runs. Texts are
+// drawn from a skewed vocabulary, so "common" matches a large share of the
+// messages and "rare" only a handful.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SearchBenchmark {
+    private static final int MESSAGES = 500_000;
+    private static final int GROUPS = 20;
+    private static final int VOCABULARY = 20_000;
+    private static final int LIMIT = 100;
+
+    @Param({"common", "rare", "twoWords", "shortPrefix"})
+    public String input;
+
+    private Connection connection;
+    private PreparedStatement searchAll;
+    private PreparedStatement searchGroup;
+    private String query;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE `messages` (`pushKey` TEXT NOT NULL, `groupName` TEXT, "
+                    + "`senderId` TEXT, `text` TEXT, `time` INTEGER NOT NULL, PRIMARY KEY(`pushKey`))");
+            statement.execute("CREATE INDEX `index_messages_groupName_pushKey` ON `messages` (`groupName`, `pushKey`)");
+            statement.execute("CREATE VIRTUAL TABLE `messages_fts` USING FTS4("
+                    + "`text` TEXT, tokenize=unicode61, content=`messages`)");
+            statement.execute("CREATE TRIGGER room_fts_content_sync_messages_fts_AFTER_INSERT "
+                    + "AFTER INSERT ON `messages` BEGIN INSERT INTO `messages_fts`(`docid`, `text`) "
+                    + "VALUES (NEW.`rowid`, NEW.`text`); END");
+        }
+        fill();
+
+        searchAll = connection.prepareStatement(bind(MessageSearch.SEARCH_ALL));
+        searchGroup = connection.prepareStatement(bind(MessageSearch.SEARCH_GROUP));
+        switch (input) {
+            case "common":
+                query = MessageSearch.toMatchQuery(word(0));
+                break;
+            case "rare":
+                query = MessageSearch.toMatchQuery(word(VOCABULARY - 1));
+                break;
+            case "twoWords":
+                query = MessageSearch.toMatchQuery(word(3) + " " + word(40));
+                break;
+            default:
+                // Two letters typed: every word starting with them
+                query = MessageSearch.toMatchQuery("ka");
+                break;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public void allGroups(Blackhole blackhole) throws SQLException {
+        searchAll.setString(1, query);
+        searchAll.setInt(2, LIMIT);
+        consume(searchAll, blackhole);
+    }
+
+    @Benchmark
+    public void oneGroup(Blackhole blackhole) throws SQLException {
+        searchGroup.setString(1, query);
+        searchGroup.setString(2, "group 7");
+        searchGroup.setInt(3, LIMIT);
+        consume(searchGroup, blackhole);
+    }
+
+    private void fill() throws SQLException {
+        Random random = new Random(42);
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO messages (pushKey, groupName, senderId, text, time) VALUES (?, ?, ?, ?, ?)")) {
+            long time = 1_700_000_000_000L;
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < MESSAGES; i++) {
+                time += random.nextInt(20_000);
+                text.setLength(0);
+                int words = 3 + random.nextInt(15);
+                for (int w = 0; w < words; w++) {
+                    // Cubing the uniform draw skews it towards the low, frequent ranks
+                    double u = random.nextDouble();
+                    text.append(w == 0 ? "" : " ").append(word((int) (u * u * u * VOCABULARY)));
+                }
+                insert.setString(1, FakeDatabase.pushKey(time, random));
+                insert.setString(2, "group " + random.nextInt(GROUPS));
+                insert.setString(3, "sender" + random.nextInt(50));
+                insert.setString(4, text.toString());
+                insert.setLong(5, time);
+                insert.addBatch();
+                if (i % 10_000 == 9_999) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    private static void consume(PreparedStatement statement, Blackhole blackhole) throws SQLException {
+        try (ResultSet results = statement.executeQuery()) {
+            while (results.next()) {
+                blackhole.consume(results.getString(1));
+                blackhole.consume(results.getString(5));
+            }
+        }
+    }
+
+    // Pronounceable, distinct per rank: 0 -> "ba", 1 -> "be", ...
+    private static String word(int rank) {
+        String consonants = "bdfgklmnprstvz";
+        String vowels = "aeiou";
+        StringBuilder word = new StringBuilder();
+        int n = rank;
+        do {
+            word.append(consonants.charAt(n % consonants.length()));
+            n /= consonants.length();
+            word.append(vowels.charAt(n % vowels.length()));
+            n /= vowels.length();
+        } while (n > 0);
+        return word.toString();
+    }
+
+    // Room's :named parameters, in order, become JDBC placeholders
+    private static String bind(String sql) {
+        return sql.replaceAll(":[a-zA-Z]+", "?");
+    }
+}
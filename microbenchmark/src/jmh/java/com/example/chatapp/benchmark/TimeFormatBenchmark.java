@@ -0,0 +1,73 @@
+package com.example.chatapp.benchmark;
+
+import com.example.chatapp.model.ChatMessage;
+import com.example.chatapp.model.TimeFormatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+// One op is one row bind's worth of time formatting, over a day of chat
+// traffic at a few messages per minute.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TimeFormatBenchmark {
+    private static final int MESSAGES = 10_000;
+
+    private long[] times;
+    private ChatMessage[] messages;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        long start = 1_700_000_000_000L;
+        times = new long[MESSAGES];
+        messages = new ChatMessage[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            start += random.nextInt(20_000);
+            times[i] = start;
+            messages[i] = new ChatMessage("sender", "text", start);
+            messages[i].convertTime();
+        }
+    }
+
+    // What ChatMessage.convertTime() did before: a new formatter per bind
+    @Benchmark
+    public String legacyPerBind() {
+        long time = times[nextIndex()];
+        SimpleDateFormat sdf = new SimpleDateFormat("HH:mm");
+        Date date = new Date(time);
+        sdf.setTimeZone(TimeZone.getDefault());
+        return sdf.format(date);
+    }
+
+    // Shared formatter with the per-minute cache
+    @Benchmark
+    public String sharedFormatter() {
+        return TimeFormatter.format(times[nextIndex()]);
+    }
+
+    // Bind path now: the value was precomputed when the message was materialized
+    @Benchmark
+    public String precomputed() {
+        return messages[nextIndex()].convertTime();
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = i + 1 == MESSAGES ? 0 : i + 1;
+        return i;
+    }
+}
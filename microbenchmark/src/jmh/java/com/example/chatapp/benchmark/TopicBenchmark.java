@@ -0,0 +1,50 @@
+package com.example.chatapp.benchmark;
+
+import com.example.chatapp.model.Topics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Group name to FCM topic, done for every subscribe and every dispatched message.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TopicBenchmark {
+    private static final int NAMES = 1024;
+
+    private String[] names;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        names = new String[NAMES];
+        for (int i = 0; i < NAMES; i++) {
+            names[i] = random.nextBoolean() ? "weekend plans " + i : "group" + i;
+        }
+    }
+
+    // What ChatActivity and the dispatcher did before Topics
+    @Benchmark
+    public String replaceAll() {
+        return names[nextIndex()].replaceAll(" ", "_");
+    }
+
+    @Benchmark
+    public String topics() {
+        return Topics.forGroup(names[nextIndex()]);
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (NAMES - 1);
+        return next;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.chatapp.benchmark;
+
+import com.example.chatapp.Repository.MessageWindow;
+import com.example.chatapp.model.ChatMessage;
+import com.example.chatapp.model.MessageCodec;
+
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Retained heap of a group's window plus the snapshot the UI holds, for the
+// old layout (a TreeMap of ChatMessage objects and an ArrayList copy per
+// publish) against the columnar MessageWindow, whose snapshot shares its
+// arrays. Not a JMH benchmark: sizes are walked once with JOL.
+//
+// ./gradlew :microbenchmark:memoryBenchmark
+public final class WindowMemoryBenchmark {
+    private static final int[] SIZES = {10_000, 100_000};
+
+    public static void main(String[] args) {
+        System.out.printf("%10s %14s %14s %8s%n", "messages", "legacy (B)", "columnar (B)", "saved");
+        for (int size : SIZES) {
+            List<ChatMessage> history = decode(size);
+
+            TreeMap<String, ChatMessage> legacy = new TreeMap<>();
+            for (ChatMessage message : history) {
+                legacy.put(message.getKey(), message);
+            }
+            List<ChatMessage> legacySnapshot = new ArrayList<>(legacy.values());
+            long legacyBytes = GraphLayout.parseInstance(legacy, legacySnapshot).totalSize();
+            legacy = null;
+            legacySnapshot = null;
+
+            MessageWindow window = new MessageWindow(size);
+            window.append(history);
+            history = null;
+            List<ChatMessage> snapshot = window.snapshot();
+            long columnarBytes = GraphLayout.parseInstance(window, snapshot).totalSize();
+
+            System.out.printf("%10d %14d %14d %7.0f%%%n", size, legacyBytes, columnarBytes,
+                    100.0 * (legacyBytes - columnarBytes) / legacyBytes);
+        }
+    }
+
+    // The same path MessageStream takes: decode, then format the display time once
+    private static List<ChatMessage> decode(int size) {
+        List<ChatMessage> messages = new ArrayList<>(size);
+        for (Map.Entry<String, Object> child : FakeDatabase.group(size, false, 42).entrySet()) {
+            ChatMessage message = MessageCodec.decode(child.getKey(), child.getValue());
+            message.convertTime();
+            messages.add(message);
+        }
+        return messages;
+    }
+}
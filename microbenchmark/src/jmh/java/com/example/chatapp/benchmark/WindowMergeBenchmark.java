@@ -0,0 +1,69 @@
+package com.example.chatapp.benchmark;
+
+import com.example.chatapp.Repository.MessageWindow;
+import com.example.chatapp.model.ChatMessage;
+import com.example.chatapp.model.MessageCodec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Merging messages into the bounded window MessageStream publishes from.
+// One op replays a whole group, either as live traffic at the tail or as
+// paging back through its history.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WindowMergeBenchmark {
+    // Same shape as MessageStream: PAGE_SIZE * MAX_PAGES
+    private static final int PAGE_SIZE = 50;
+    private static final int CAPACITY = 500;
+    // Messages per decoded batch, each batch ends in one published snapshot
+    private static final int BATCH = 64;
+
+    @Param({"10000", "100000", "1000000"})
+    public int messages;
+
+    private List<ChatMessage> history;
+
+    @Setup
+    public void setUp() {
+        history = new ArrayList<>(messages);
+        for (Map.Entry<String, Object> child : FakeDatabase.group(messages, false, 42).entrySet()) {
+            history.add(MessageCodec.decode(child.getKey(), child.getValue()));
+        }
+    }
+
+    @Benchmark
+    public void liveTail(Blackhole blackhole) {
+        MessageWindow window = new MessageWindow(CAPACITY);
+        for (int i = 0; i < history.size(); i++) {
+            window.put(history.get(i));
+            if (i % BATCH == BATCH - 1) {
+                blackhole.consume(window.snapshot());
+            }
+        }
+    }
+
+    @Benchmark
+    public void pageBack(Blackhole blackhole) {
+        MessageWindow window = new MessageWindow(CAPACITY);
+        int end = history.size();
+        window.append(history.subList(end - PAGE_SIZE, end));
+        for (end -= PAGE_SIZE; end > 0; end -= PAGE_SIZE) {
+            window.prepend(history.subList(Math.max(0, end - PAGE_SIZE), end));
+            blackhole.consume(window.snapshot());
+        }
+    }
+}
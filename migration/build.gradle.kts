@@ -0,0 +1,51 @@
+plugins {
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// The wire codec is shared with the app, compiled from its model package
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include("com/example/chatapp/model/**", "com/example/chatapp/migration/**")
+        }
+    }
+}
+
+dependencies {
+    implementation("com.google.firebase:firebase-admin:9.3.0")
+}
+
+// ./gradlew :migration:run
+application {
+    mainClass.set("com.example.chatapp.migration.MessageMigration")
+}
+
+// ./gradlew :migration:benchmark
+tasks.register<JavaExec>("benchmark") {
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.example.chatapp.migration.SizeBenchmark")
+}
+
+// ./gradlew :migration:seedBenchmarkGroup
+tasks.register<JavaExec>("seedBenchmarkGroup") {
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.example.chatapp.migration.SeedBenchmarkGroup")
+}
+
+// ./gradlew :migration:migrateLayout
+tasks.register<JavaExec>("migrateLayout") {
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.example.chatapp.migration.LayoutMigration")
+}
+
+// ./gradlew :migration:writeLoadTest, against the database emulator
+tasks.register<JavaExec>("writeLoadTest") {
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.example.chatapp.migration.WriteLoadTest")
+}
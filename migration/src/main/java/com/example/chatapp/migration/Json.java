@@ -0,0 +1,64 @@
+package com.example.chatapp.migration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+// Serialized JSON size of a database value, the way it goes over the wire
+final class Json {
+
+    private Json() {
+    }
+
+    static int size(Object value) {
+        return write(new StringBuilder(), value).toString().getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    static StringBuilder write(StringBuilder out, Object value) {
+        if (value instanceof Map) {
+            out.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                writeString(out, String.valueOf(entry.getKey()));
+                out.append(':');
+                write(out, entry.getValue());
+            }
+            return out.append('}');
+        }
+        if (value instanceof List) {
+            out.append('[');
+            boolean first = true;
+            for (Object item : (List<?>) value) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                write(out, item);
+            }
+            return out.append(']');
+        }
+        if (value instanceof String) {
+            return writeString(out, (String) value);
+        }
+        return out.append(value);
+    }
+
+    private static StringBuilder writeString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.append('"');
+    }
+}
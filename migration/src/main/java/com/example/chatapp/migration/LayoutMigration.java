@@ -0,0 +1,317 @@
+package com.example.chatapp.migration;
+
+import com.example.chatapp.model.DataLayout;
+import com.example.chatapp.model.MessageCodec;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+// Moves every group from the name-keyed layout (/<groupName>/<pushKey>,
+// groupIndex, groupMembers/<groupName>, readMarkers/<uid>/<groupName>) to
+// DataLayout: meta, members and read markers keyed by group id, messages in
+// day buckets on the group's shard. Legacy message values are re-encoded on
+// the way. Every write is a set of absolute values, and the bucket and
+// message counts are recounted from the new layout, so the job can be
+// stopped and rerun, also while new clients already write the new layout.
+// The old nodes are only removed with DELETE_OLD, once a run has finished.
+//
+// Groups are every root child that is not a node of either layout, found
+// with a shallow REST read, plus the groupIndex entries: old clients did not
+// always index a group before writing to it. A group whose name is one of
+// those nodes, say "messages", shares it with the new layout, so only its
+// push keys are moved and removed; ids never start with '-', push keys do.
+//
+//   FIREBASE_DATABASE_URL=https://<project>.firebaseio.com
+//   FIREBASE_MESSAGE_SHARDS=https://a.firebaseio.com,... (optional, same list as the app's message_shard_urls)
+//   FIREBASE_DATABASE_EMULATOR_HOST=localhost:9000   (optional)
+//   DRY_RUN=true                                     (optional, only reports)
+//   DELETE_OLD=true                                  (optional, removes the old nodes after copying)
+public class LayoutMigration {
+    private static final Logger LOG = Logger.getLogger(LayoutMigration.class.getName());
+
+    private static final int PAGE_SIZE = 500;
+    // Every push key written before 2109 starts with '-'
+    private static final String PUSH_KEY_START = "-";
+    private static final String PUSH_KEY_END = "-\uf8ff";
+    private static final Set<String> LAYOUT_NODES = new HashSet<>(Arrays.asList(
+            DataLayout.GROUPS, DataLayout.GROUP_MEMBERS, DataLayout.READ_MARKERS, DataLayout.MESSAGES,
+            DataLayout.MESSAGE_BUCKETS, DataLayout.PRESENCE, DataLayout.GROUP_PRESENCE,
+            MessageMigration.GROUP_INDEX));
+
+    private final DatabaseReference root;
+    private final List<String> rootKeys;
+    private final List<FirebaseDatabase> shards;
+    private final boolean dryRun;
+    private final boolean deleteOld;
+
+    private int groups;
+    private long messages;
+    private long reencoded;
+
+    // rootKeys are the names of the root's children, see rootKeys()
+    public LayoutMigration(DatabaseReference root, List<String> rootKeys, List<FirebaseDatabase> shards,
+                           boolean dryRun, boolean deleteOld) {
+        this.root = root;
+        this.rootKeys = rootKeys;
+        this.shards = shards;
+        this.dryRun = dryRun;
+        this.deleteOld = deleteOld;
+    }
+
+    public void run() throws Exception {
+        DataSnapshot index = read(root.child(MessageMigration.GROUP_INDEX));
+        DataSnapshot markers = read(root.child(DataLayout.READ_MARKERS));
+        Set<String> names = new TreeSet<>();
+        for (DataSnapshot group : index.getChildren()) {
+            names.add(group.getKey());
+        }
+        for (String key : rootKeys) {
+            if (!LAYOUT_NODES.contains(key)) {
+                names.add(key);
+            }
+        }
+        for (String name : names) {
+            if (migrateGroup(name, index.child(name), markers)) {
+                groups++;
+            }
+        }
+        LOG.info(String.format("%s %d groups, %d messages (%d re-encoded)",
+                dryRun ? "Would move" : "Moved", groups, messages, reencoded));
+    }
+
+    // False if groupName turned out not to be a group
+    private boolean migrateGroup(String groupName, DataSnapshot indexEntry, DataSnapshot markers) throws Exception {
+        String groupId = DataLayout.groupId(groupName);
+        DatabaseReference shard = shardFor(groupId);
+        DatabaseReference oldMessages = root.child(groupName);
+
+        // Messages, one page per multi-path update
+        Map<String, Integer> days = new TreeMap<>();
+        // Only kept for a name the new layout also uses, whose node stays
+        boolean shared = LAYOUT_NODES.contains(groupName);
+        List<String> moved = new ArrayList<>();
+        String cursor = null;
+        while (true) {
+            // The admin SDK has no startAfter(), so each page after the first repeats the cursor
+            Query page = cursor == null
+                    ? oldMessages.orderByKey().startAt(PUSH_KEY_START).endAt(PUSH_KEY_END).limitToFirst(PAGE_SIZE)
+                    : oldMessages.orderByKey().startAt(cursor).endAt(PUSH_KEY_END).limitToFirst(PAGE_SIZE + 1);
+            DataSnapshot snapshot = read(page);
+            String previous = cursor;
+
+            Map<String, Object> update = new HashMap<>();
+            int count = 0;
+            for (DataSnapshot child : snapshot.getChildren()) {
+                if (child.getKey().equals(previous)) {
+                    continue;
+                }
+                count++;
+                cursor = child.getKey();
+                if (shared) {
+                    moved.add(cursor);
+                }
+                Object value = child.getValue();
+                if (MessageCodec.isLegacy(value)) {
+                    value = MessageCodec.encode(MessageCodec.decode(child.getKey(), value));
+                    reencoded++;
+                }
+                String day = DataLayout.bucketOf(child.getKey());
+                days.merge(day, 1, Integer::sum);
+                update.put(DataLayout.MESSAGES + "/" + groupId + "/" + day + "/" + child.getKey(), value);
+            }
+            messages += update.size();
+            if (!update.isEmpty() && !dryRun) {
+                shard.updateChildrenAsync(update).get();
+            }
+            if (count < PAGE_SIZE) {
+                break;
+            }
+        }
+        if (days.isEmpty() && !indexEntry.exists()) {
+            LOG.info(String.format("Skipped /%s: not in %s and holds no messages", groupName,
+                    MessageMigration.GROUP_INDEX));
+            return false;
+        }
+
+        // Meta, members and read markers, all in the directory
+        Map<String, Object> directory = new HashMap<>();
+        String meta = DataLayout.GROUPS + "/" + groupId + "/" + DataLayout.META;
+        directory.put(meta + "/groupName", groupName);
+        for (String field : new String[]{"lastMessage", "lastActivity", "memberCount"}) {
+            Object value = indexEntry.child(field).getValue();
+            if (value != null) {
+                directory.put(meta + "/" + field, value);
+            }
+        }
+        for (DataSnapshot member : read(root.child(DataLayout.GROUP_MEMBERS).child(groupName)).getChildren()) {
+            directory.put(DataLayout.GROUP_MEMBERS + "/" + groupId + "/" + member.getKey(), member.getValue());
+        }
+        List<String> markerOwners = new ArrayList<>();
+        for (DataSnapshot user : markers.getChildren()) {
+            DataSnapshot marker = user.child(groupName);
+            if (marker.exists()) {
+                directory.put(DataLayout.READ_MARKERS + "/" + user.getKey() + "/" + groupId, marker.getValue());
+                markerOwners.add(user.getKey());
+            }
+        }
+
+        if (dryRun) {
+            LOG.info(String.format("%s -> %s: %d days, %d read markers",
+                    groupName, groupId, days.size(), markerOwners.size()));
+            return true;
+        }
+
+        // Counts come from what is in the new layout now, which includes
+        // messages new clients sent since the copy started
+        Map<String, Object> buckets = new HashMap<>();
+        for (String day : days.keySet()) {
+            DataSnapshot bucket = read(shard.child(DataLayout.MESSAGES).child(groupId).child(day));
+            buckets.put(DataLayout.MESSAGE_BUCKETS + "/" + groupId + "/" + day, bucket.getChildrenCount());
+        }
+        if (!buckets.isEmpty()) {
+            shard.updateChildrenAsync(buckets).get();
+        }
+        long messageCount = 0;
+        for (DataSnapshot bucket : read(shard.child(DataLayout.MESSAGE_BUCKETS).child(groupId)).getChildren()) {
+            Long count = bucket.getValue(Long.class);
+            messageCount += count == null ? 0 : count;
+        }
+        directory.put(meta + "/messageCount", messageCount);
+        root.updateChildrenAsync(directory).get();
+        LOG.info(String.format("%s -> %s: %d messages in %d days", groupName, groupId, messageCount, days.size()));
+
+        if (deleteOld) {
+            Map<String, Object> delete = new HashMap<>();
+            if (shared) {
+                for (String key : moved) {
+                    delete.put(groupName + "/" + key, null);
+                }
+            } else {
+                delete.put(groupName, null);
+            }
+            delete.put(MessageMigration.GROUP_INDEX + "/" + groupName, null);
+            delete.put(DataLayout.GROUP_MEMBERS + "/" + groupName, null);
+            for (String uid : markerOwners) {
+                delete.put(DataLayout.READ_MARKERS + "/" + uid + "/" + groupName, null);
+            }
+            root.updateChildrenAsync(delete).get();
+        }
+        return true;
+    }
+
+    private DatabaseReference shardFor(String groupId) {
+        return shards.isEmpty() ? root : shards.get(DataLayout.shardOf(groupId, shards.size())).getReference();
+    }
+
+    private static DataSnapshot read(Query query) throws Exception {
+        CompletableFuture<DataSnapshot> result = new CompletableFuture<>();
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot snapshot) {
+                result.complete(snapshot);
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                result.completeExceptionally(error.toException());
+            }
+        });
+        return result.get();
+    }
+
+    // The admin SDK always reads whole subtrees, which for the root is every
+    // message; the REST API's shallow read only lists the keys
+    static List<String> rootKeys(String databaseUrl, GoogleCredentials credentials) throws Exception {
+        String emulatorHost = System.getenv("FIREBASE_DATABASE_EMULATOR_HOST");
+        String url;
+        if (emulatorHost != null) {
+            url = "http://" + emulatorHost + "/.json?shallow=true&ns=" + namespaceOf(databaseUrl);
+        } else {
+            url = databaseUrl.replaceAll("/+$", "") + "/.json?shallow=true";
+        }
+        GoogleCredentials scoped = credentials.createScoped(Arrays.asList(
+                "https://www.googleapis.com/auth/firebase.database",
+                "https://www.googleapis.com/auth/userinfo.email"));
+        scoped.refreshIfExpired();
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestProperty("Authorization", "Bearer " + scoped.getAccessToken().getTokenValue());
+        if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+            throw new IllegalStateException("Shallow read of " + url + " failed: HTTP " + connection.getResponseCode());
+        }
+        try (Reader reader = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+            JsonElement keys = JsonParser.parseReader(reader);
+            // An empty database reads as null
+            return keys.isJsonObject() ? new ArrayList<>(keys.getAsJsonObject().keySet()) : new ArrayList<>();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    // https://<ns>.firebaseio.com, or http://host:port?ns=<ns> for the emulator
+    private static String namespaceOf(String databaseUrl) {
+        int ns = databaseUrl.indexOf("ns=");
+        if (ns >= 0) {
+            return databaseUrl.substring(ns + 3).split("&")[0];
+        }
+        String host = databaseUrl.substring(databaseUrl.indexOf("://") + 3);
+        return host.substring(0, host.indexOf('.'));
+    }
+
+    static List<FirebaseDatabase> shardsFromEnv() {
+        List<FirebaseDatabase> shards = new ArrayList<>();
+        String urls = System.getenv("FIREBASE_MESSAGE_SHARDS");
+        if (urls != null && !urls.isEmpty()) {
+            for (String url : urls.split(",")) {
+                shards.add(FirebaseDatabase.getInstance(url.trim()));
+            }
+        }
+        return shards;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String databaseUrl = System.getenv("FIREBASE_DATABASE_URL");
+        boolean emulator = System.getenv("FIREBASE_DATABASE_EMULATOR_HOST") != null;
+        boolean dryRun = Boolean.parseBoolean(System.getenv("DRY_RUN"));
+        boolean deleteOld = Boolean.parseBoolean(System.getenv("DELETE_OLD"));
+
+        GoogleCredentials credentials = emulator
+                ? GoogleCredentials.create(new AccessToken("owner", new Date(Long.MAX_VALUE)))
+                : GoogleCredentials.getApplicationDefault();
+        FirebaseApp.initializeApp(FirebaseOptions.builder()
+                .setCredentials(credentials)
+                .setDatabaseUrl(databaseUrl)
+                .build());
+
+        new LayoutMigration(FirebaseDatabase.getInstance().getReference(), rootKeys(databaseUrl, credentials),
+                shardsFromEnv(), dryRun, deleteOld).run();
+        System.exit(0);
+    }
+}
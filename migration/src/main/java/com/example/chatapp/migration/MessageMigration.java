@@ -0,0 +1,134 @@
+package com.example.chatapp.migration;
+
+import com.example.chatapp.model.MessageCodec;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+// Rewrites legacy {senderId, text, time} message nodes in the compact
+// MessageCodec format, one page of each group per multi-path update.
+// Nodes that are already compact are skipped, so the job can be stopped and
+// rerun at any time. Run it once every client reads through MessageCodec;
+// older app versions cannot read compact nodes.
+//
+//   FIREBASE_DATABASE_URL=https://<project>.firebaseio.com
+//   FIREBASE_DATABASE_EMULATOR_HOST=localhost:9000   (optional)
+//   DRY_RUN=true                                     (optional, only reports)
+public class MessageMigration {
+    private static final Logger LOG = Logger.getLogger(MessageMigration.class.getName());
+
+    // Group index of the name-keyed layout this job runs on, before
+    // LayoutMigration moves the groups to DataLayout
+    static final String GROUP_INDEX = "groupIndex";
+
+    private static final int PAGE_SIZE = 500;
+
+    private final DatabaseReference root;
+    private final boolean dryRun;
+
+    private long migrated;
+    private long skipped;
+    private long bytesBefore;
+    private long bytesAfter;
+
+    public MessageMigration(DatabaseReference root, boolean dryRun) {
+        this.root = root;
+        this.dryRun = dryRun;
+    }
+
+    public void run() throws Exception {
+        DataSnapshot index = read(root.child(GROUP_INDEX));
+        for (DataSnapshot group : index.getChildren()) {
+            migrateGroup(group.getKey());
+        }
+        LOG.info(String.format("%s %d messages, %d already compact, %d -> %d bytes",
+                dryRun ? "Would migrate" : "Migrated", migrated, skipped, bytesBefore, bytesAfter));
+    }
+
+    private void migrateGroup(String groupName) throws Exception {
+        DatabaseReference group = root.child(groupName);
+        String cursor = null;
+        while (true) {
+            // The admin SDK has no startAfter(), so each page after the first repeats the cursor
+            Query page = cursor == null
+                    ? group.orderByKey().limitToFirst(PAGE_SIZE)
+                    : group.orderByKey().startAt(cursor).limitToFirst(PAGE_SIZE + 1);
+            DataSnapshot snapshot = read(page);
+            String previous = cursor;
+
+            Map<String, Object> update = new HashMap<>();
+            int count = 0;
+            for (DataSnapshot child : snapshot.getChildren()) {
+                if (child.getKey().equals(previous)) {
+                    continue;
+                }
+                count++;
+                cursor = child.getKey();
+                Object value = child.getValue();
+                if (!MessageCodec.isLegacy(value)) {
+                    skipped++;
+                    continue;
+                }
+                Map<String, Object> compact = MessageCodec.encode(MessageCodec.decode(child.getKey(), value));
+                bytesBefore += Json.size(value);
+                bytesAfter += Json.size(compact);
+                update.put(child.getKey(), compact);
+            }
+            if (!update.isEmpty()) {
+                migrated += update.size();
+                if (!dryRun) {
+                    group.updateChildrenAsync(update).get();
+                }
+            }
+            if (count < PAGE_SIZE) {
+                return;
+            }
+        }
+    }
+
+    private static DataSnapshot read(Query query) throws Exception {
+        CompletableFuture<DataSnapshot> result = new CompletableFuture<>();
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot snapshot) {
+                result.complete(snapshot);
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                result.completeExceptionally(error.toException());
+            }
+        });
+        return result.get();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String databaseUrl = System.getenv("FIREBASE_DATABASE_URL");
+        boolean emulator = System.getenv("FIREBASE_DATABASE_EMULATOR_HOST") != null;
+        boolean dryRun = Boolean.parseBoolean(System.getenv("DRY_RUN"));
+
+        GoogleCredentials credentials = emulator
+                ? GoogleCredentials.create(new AccessToken("owner", new Date(Long.MAX_VALUE)))
+                : GoogleCredentials.getApplicationDefault();
+        FirebaseApp.initializeApp(FirebaseOptions.builder()
+                .setCredentials(credentials)
+                .setDatabaseUrl(databaseUrl)
+                .build());
+
+        new MessageMigration(FirebaseDatabase.getInstance().getReference(), dryRun).run();
+        System.exit(0);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.chatapp.migration;
+
+import com.example.chatapp.model.ChatMessage;
+import com.example.chatapp.model.DataLayout;
+import com.example.chatapp.model.MessageCodec;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ServerValue;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+// Fills the group the macrobenchmark module opens and scrolls. Existing
+// messages in the group are replaced.
+//
+//   FIREBASE_DATABASE_URL=https://<project>.firebaseio.com
+//   FIREBASE_MESSAGE_SHARDS=https://a.firebaseio.com,... (optional, same list as the app's message_shard_urls)
+//   FIREBASE_DATABASE_EMULATOR_HOST=localhost:9000   (optional)
+public class SeedBenchmarkGroup {
+    // Must match ChatJourneys.LARGE_GROUP in the macrobenchmark module
+    static final String GROUP = "benchmark-5000";
+    static final int MESSAGES = 5_000;
+
+    private static final int SENDERS = 20;
+    private static final int BATCH = 500;
+
+    public static void main(String[] args) throws Exception {
+        String databaseUrl = System.getenv("FIREBASE_DATABASE_URL");
+        boolean emulator = System.getenv("FIREBASE_DATABASE_EMULATOR_HOST") != null;
+
+        GoogleCredentials credentials = emulator
+                ? GoogleCredentials.create(new AccessToken("owner", new Date(Long.MAX_VALUE)))
+                : GoogleCredentials.getApplicationDefault();
+        FirebaseApp.initializeApp(FirebaseOptions.builder()
+                .setCredentials(credentials)
+                .setDatabaseUrl(databaseUrl)
+                .build());
+
+        DatabaseReference root = FirebaseDatabase.getInstance().getReference();
+        String groupId = DataLayout.groupId(GROUP);
+        List<FirebaseDatabase> shards = LayoutMigration.shardsFromEnv();
+        DatabaseReference shard = shards.isEmpty()
+                ? root
+                : shards.get(DataLayout.shardOf(groupId, shards.size())).getReference();
+        DatabaseReference group = shard.child(DataLayout.MESSAGES).child(groupId);
+        DatabaseReference buckets = shard.child(DataLayout.MESSAGE_BUCKETS).child(groupId);
+        group.removeValueAsync().get();
+        buckets.removeValueAsync().get();
+
+        Random random = new Random(42);
+        long time = System.currentTimeMillis() - MESSAGES * 60_000L;
+        Map<String, Object> update = new HashMap<>();
+        Map<String, Long> counts = new TreeMap<>();
+        String lastText = null;
+        for (int i = 0; i < MESSAGES; i++) {
+            time += random.nextInt(60_000);
+            lastText = "Message " + i + (i % 7 == 0 ? " with a longer body that wraps onto a second line" : "");
+            ChatMessage message = new ChatMessage("sender" + random.nextInt(SENDERS), lastText, time);
+            String key = group.push().getKey();
+            String day = DataLayout.bucketOf(key);
+            update.put(day + "/" + key, MessageCodec.encode(message));
+            counts.merge(day, 1L, Long::sum);
+            if (update.size() == BATCH) {
+                group.updateChildrenAsync(update).get();
+                update.clear();
+            }
+        }
+        if (!update.isEmpty()) {
+            group.updateChildrenAsync(update).get();
+        }
+        buckets.updateChildrenAsync(new HashMap<>(counts)).get();
+
+        Map<String, Object> meta = new HashMap<>();
+        meta.put("groupName", GROUP);
+        meta.put("lastMessage", lastText);
+        meta.put("lastActivity", ServerValue.TIMESTAMP);
+        meta.put("messageCount", MESSAGES);
+        root.child(DataLayout.GROUPS).child(groupId).child(DataLayout.META).updateChildrenAsync(meta).get();
+
+        System.out.println("Seeded " + MESSAGES + " messages into " + GROUP);
+        System.exit(0);
+    }
+}
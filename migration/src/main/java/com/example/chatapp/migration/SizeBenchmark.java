@@ -0,0 +1,101 @@
+package com.example.chatapp.migration;
+
+import com.example.chatapp.model.ChatMessage;
+import com.example.chatapp.model.MessageCodec;
+import com.example.chatapp.model.SenderDictionary;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Bytes per message for each wire format over a synthetic corpus shaped like
+// real chat: groups of 2 to 50 members with Firebase-style 28-character UIDs,
+// mostly short texts with a tail of long ones, some of them non-ASCII.
+// The push key is identical in every format and is not counted.
+public class SizeBenchmark {
+    private static final int GROUPS = 200;
+    private static final int MESSAGES = 200_000;
+    private static final String UID_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    private static final String[] WORDS = {
+            "ok", "yes", "no", "lol", "thanks", "see", "you", "tomorrow", "meeting", "at", "the", "office",
+            "running", "late", "sounds", "good", "what", "time", "is", "it", "can", "someone", "send",
+            "link", "again", "\ud83d\udc4d", "\ud83d\ude02", "caf\u00e9", "\u00fcber", "\u0928\u092e\u0938\u094d\u0924\u0947"};
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        List<List<String>> members = new ArrayList<>();
+        for (int g = 0; g < GROUPS; g++) {
+            int size = 2 + random.nextInt(49);
+            List<String> uids = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                uids.add(uid(random));
+            }
+            members.add(uids);
+        }
+
+        Map<Integer, SenderDictionary> dictionaries = new HashMap<>();
+        long legacy = 0;
+        long compact = 0;
+        long withDictionary = 0;
+        long time = 1_700_000_000_000L;
+        for (int i = 0; i < MESSAGES; i++) {
+            int group = random.nextInt(GROUPS);
+            List<String> uids = members.get(group);
+            time += random.nextInt(20_000);
+            ChatMessage message = new ChatMessage(uids.get(random.nextInt(uids.size())), text(random), time);
+
+            legacy += Json.size(legacyValue(message));
+            compact += Json.size(MessageCodec.encode(message));
+            SenderDictionary senders = dictionaries.computeIfAbsent(group, key -> new SenderDictionary());
+            withDictionary += Json.size(MessageCodec.encode(message, senders));
+        }
+        // The dictionaries are downloaded too, charge them to the messages
+        long dictionaryBytes = 0;
+        for (SenderDictionary senders : dictionaries.values()) {
+            dictionaryBytes += Json.size(senders.toList());
+        }
+
+        System.out.printf("messages:                %d in %d groups%n", MESSAGES, GROUPS);
+        print("legacy", legacy, legacy);
+        print("compact", compact, legacy);
+        print("compact + dictionary", withDictionary + dictionaryBytes, legacy);
+    }
+
+    private static void print(String format, long bytes, long baseline) {
+        System.out.printf("%-24s %6.1f bytes/message  (%+.0f%%)%n", format + ":",
+                (double) bytes / MESSAGES, 100.0 * (bytes - baseline) / baseline);
+    }
+
+    // What getValue()/setValue(ChatMessage) produced before the codec
+    private static Map<String, Object> legacyValue(ChatMessage message) {
+        Map<String, Object> value = new HashMap<>();
+        value.put("senderId", message.getSenderId());
+        value.put("text", message.getText());
+        value.put("time", message.getTime());
+        return value;
+    }
+
+    private static String uid(Random random) {
+        StringBuilder uid = new StringBuilder(28);
+        for (int i = 0; i < 28; i++) {
+            uid.append(UID_CHARS.charAt(random.nextInt(UID_CHARS.length())));
+        }
+        return uid.toString();
+    }
+
+    // 60% one to four words, 30% a sentence, 10% a paragraph
+    private static String text(Random random) {
+        int roll = random.nextInt(10);
+        int words = roll < 6 ? 1 + random.nextInt(4) : roll < 9 ? 5 + random.nextInt(20) : 25 + random.nextInt(80);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+}
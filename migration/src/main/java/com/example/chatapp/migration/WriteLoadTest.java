@@ -0,0 +1,160 @@
+package com.example.chatapp.migration;
+
+import com.example.chatapp.model.ChatMessage;
+import com.example.chatapp.model.DataLayout;
+import com.example.chatapp.model.MessageCodec;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ServerValue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Write throughput per group on the database emulator, for 1, 2, 4 and 8
+// groups written at the same time. Every write is what one Outbox flush of
+// a single message sends: the message and its day bucket count on the
+// group's shard, and the meta preview and counter and the sender's read
+// marker in the directory. With
+// message shards configured (emulator namespaces work), groups spread over
+// the instances and writes per group should hold as groups are added.
+// Test groups are removed afterwards.
+//
+//   FIREBASE_DATABASE_EMULATOR_HOST=localhost:9000   (required)
+//   FIREBASE_DATABASE_URL=https://loadtest.firebaseio.com
+//   FIREBASE_MESSAGE_SHARDS=https://shard0.firebaseio.com,... (optional)
+//   LOAD_SECONDS=10                                  (optional, per step)
+//   WRITERS_PER_GROUP=4                              (optional)
+public class WriteLoadTest {
+    private static final int[] GROUP_COUNTS = {1, 2, 4, 8};
+    private static final int DEFAULT_SECONDS = 10;
+    private static final int DEFAULT_WRITERS = 4;
+
+    private final DatabaseReference root;
+    private final List<FirebaseDatabase> shards;
+    private final long durationMs;
+    private final int writersPerGroup;
+
+    public WriteLoadTest(DatabaseReference root, List<FirebaseDatabase> shards, long durationMs, int writersPerGroup) {
+        this.root = root;
+        this.shards = shards;
+        this.durationMs = durationMs;
+        this.writersPerGroup = writersPerGroup;
+    }
+
+    public void run() throws Exception {
+        System.out.println("groups  writes/s  per group (min / avg)");
+        for (int groups : GROUP_COUNTS) {
+            AtomicLong[] writes = new AtomicLong[groups];
+            List<Thread> threads = new ArrayList<>();
+            long deadline = System.currentTimeMillis() + durationMs;
+            for (int g = 0; g < groups; g++) {
+                String groupId = DataLayout.groupId("loadtest " + groups + "-" + g);
+                writes[g] = new AtomicLong();
+                for (int w = 0; w < writersPerGroup; w++) {
+                    Thread thread = new Thread(writer(groupId, "writer" + w, writes[g], deadline));
+                    threads.add(thread);
+                    thread.start();
+                }
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            double seconds = durationMs / 1000.0;
+            long total = 0;
+            long min = Long.MAX_VALUE;
+            for (AtomicLong count : writes) {
+                total += count.get();
+                min = Math.min(min, count.get());
+            }
+            System.out.printf("%6d  %8.0f  %8.0f / %.0f%n", groups, total / seconds, min / seconds,
+                    total / seconds / groups);
+
+            for (int g = 0; g < groups; g++) {
+                remove(DataLayout.groupId("loadtest " + groups + "-" + g));
+            }
+        }
+    }
+
+    private Runnable writer(String groupId, String senderId, AtomicLong writes, long deadline) {
+        DatabaseReference shard = shardFor(groupId);
+        String meta = DataLayout.GROUPS + "/" + groupId + "/" + DataLayout.META;
+        return () -> {
+            int i = 0;
+            while (System.currentTimeMillis() < deadline) {
+                String key = shard.push().getKey();
+                String day = DataLayout.bucketOf(key);
+                String text = "Load message " + i++;
+
+                Map<String, Object> messages = new HashMap<>();
+                messages.put(DataLayout.MESSAGES + "/" + groupId + "/" + day + "/" + key,
+                        MessageCodec.encode(new ChatMessage(senderId, text, System.currentTimeMillis())));
+                messages.put(DataLayout.MESSAGE_BUCKETS + "/" + groupId + "/" + day, increment(1));
+                Map<String, Object> directory = shard == root ? messages : new HashMap<>();
+                directory.put(meta + "/lastMessage", text);
+                directory.put(meta + "/lastActivity", ServerValue.TIMESTAMP);
+                directory.put(meta + "/messageCount", increment(1));
+                String marker = DataLayout.READ_MARKERS + "/" + senderId + "/" + groupId;
+                directory.put(marker + "/key", key);
+                directory.put(marker + "/count", increment(1));
+                try {
+                    if (directory != messages) {
+                        root.updateChildrenAsync(directory).get();
+                    }
+                    shard.updateChildrenAsync(messages).get();
+                } catch (Exception e) {
+                    throw new IllegalStateException("Write to " + groupId + " failed", e);
+                }
+                writes.incrementAndGet();
+            }
+        };
+    }
+
+    // The admin SDK has no ServerValue.increment(), this is the value the Android SDK sends for it
+    private static Map<String, Object> increment(long delta) {
+        return Collections.singletonMap(".sv", Collections.singletonMap("increment", delta));
+    }
+
+    private void remove(String groupId) throws Exception {
+        DatabaseReference shard = shardFor(groupId);
+        shard.child(DataLayout.MESSAGES).child(groupId).removeValueAsync().get();
+        shard.child(DataLayout.MESSAGE_BUCKETS).child(groupId).removeValueAsync().get();
+        root.child(DataLayout.GROUPS).child(groupId).removeValueAsync().get();
+        Map<String, Object> markers = new HashMap<>();
+        for (int w = 0; w < writersPerGroup; w++) {
+            markers.put(DataLayout.READ_MARKERS + "/writer" + w + "/" + groupId, null);
+        }
+        root.updateChildrenAsync(markers).get();
+    }
+
+    private DatabaseReference shardFor(String groupId) {
+        return shards.isEmpty() ? root : shards.get(DataLayout.shardOf(groupId, shards.size())).getReference();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (System.getenv("FIREBASE_DATABASE_EMULATOR_HOST") == null) {
+            throw new IllegalStateException("Runs against the emulator only, set FIREBASE_DATABASE_EMULATOR_HOST");
+        }
+        String seconds = System.getenv("LOAD_SECONDS");
+        String writers = System.getenv("WRITERS_PER_GROUP");
+
+        FirebaseApp.initializeApp(FirebaseOptions.builder()
+                .setCredentials(GoogleCredentials.create(new AccessToken("owner", new Date(Long.MAX_VALUE))))
+                .setDatabaseUrl(System.getenv("FIREBASE_DATABASE_URL"))
+                .build());
+
+        new WriteLoadTest(FirebaseDatabase.getInstance().getReference(), LayoutMigration.shardsFromEnv(),
+                (seconds == null ? DEFAULT_SECONDS : Integer.parseInt(seconds)) * 1000L,
+                writers == null ? DEFAULT_WRITERS : Integer.parseInt(writers)).run();
+        System.exit(0);
+    }
+}
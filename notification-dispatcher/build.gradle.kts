@@ -0,0 +1,33 @@
+plugins {
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// Messages are read through the app's wire codec, compiled from its model package
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include("com/example/chatapp/model/**", "com/example/chatapp/dispatcher/**")
+        }
+    }
+}
+
+dependencies {
+    implementation("com.google.firebase:firebase-admin:9.3.0")
+    testImplementation("junit:junit:4.13.2")
+}
+
+application {
+    mainClass.set("com.example.chatapp.dispatcher.NotificationDispatcher")
+}
+
+// ./gradlew :notification-dispatcher:benchmark
+tasks.register<JavaExec>("benchmark") {
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.example.chatapp.dispatcher.ThroughputBenchmark")
+}
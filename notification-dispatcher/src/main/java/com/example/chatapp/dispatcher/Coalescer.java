@@ -0,0 +1,99 @@
+package com.example.chatapp.dispatcher;
+
+import com.example.chatapp.model.Topics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Buffers new messages per topic for a time window, drops push keys it has
+// already seen, and hands every due topic to the sender in a single batch.
+public class Coalescer {
+    private static final Logger LOG = Logger.getLogger(Coalescer.class.getName());
+
+    private final long windowMillis;
+    private final NotificationSender sender;
+    private final Map<String, Pending> pending = new HashMap<>();
+    private final Map<String, Boolean> seenKeys;
+
+    private static class Pending {
+        final String groupName;
+        final long dueAt;
+        // Sender of every message so far, null once two senders are mixed
+        String senderId;
+        String lastText;
+        int count;
+
+        Pending(String groupName, long dueAt) {
+            this.groupName = groupName;
+            this.dueAt = dueAt;
+        }
+    }
+
+    public Coalescer(long windowMillis, int dedupeCapacity, NotificationSender sender) {
+        this.windowMillis = windowMillis;
+        this.sender = sender;
+        this.seenKeys = new LinkedHashMap<String, Boolean>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > dedupeCapacity;
+            }
+        };
+    }
+
+    public synchronized boolean offer(String groupName, String pushKey, String senderId, String text, long now) {
+        if (seenKeys.put(pushKey, Boolean.TRUE) != null) {
+            return false;
+        }
+        String topic = topicFor(groupName);
+        Pending p = pending.get(topic);
+        if (p == null) {
+            p = new Pending(groupName, now + windowMillis);
+            pending.put(topic, p);
+        }
+        p.senderId = p.count == 0 || Objects.equals(p.senderId, senderId) ? senderId : null;
+        p.lastText = text;
+        p.count++;
+        return true;
+    }
+
+    // Sends every topic whose window has closed; returns the number of notifications sent
+    public int flushDue(long now) {
+        List<Notification> batch = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, Pending>> it = pending.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Pending> entry = it.next();
+                Pending p = entry.getValue();
+                if (p.dueAt <= now) {
+                    batch.add(new Notification(entry.getKey(), p.groupName, p.senderId, p.lastText, p.count));
+                    it.remove();
+                }
+            }
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        try {
+            sender.send(batch);
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to send " + batch.size() + " notifications", e);
+        }
+        return batch.size();
+    }
+
+    public synchronized int pendingTopics() {
+        return pending.size();
+    }
+
+    // Same rule the app uses when subscribing to a group topic
+    public static String topicFor(String groupName) {
+        return Topics.forGroup(groupName);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.chatapp.dispatcher;
+
+import com.google.firebase.messaging.AndroidConfig;
+import com.google.firebase.messaging.BatchResponse;
+import com.google.firebase.messaging.FirebaseMessaging;
+import com.google.firebase.messaging.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+public class FcmSender implements NotificationSender {
+    private static final Logger LOG = Logger.getLogger(FcmSender.class.getName());
+    // Upper bound of a single sendEach call
+    private static final int MAX_BATCH = 500;
+    private static final long TTL_MILLIS = 3600 * 1000L;
+
+    private final FirebaseMessaging messaging;
+
+    public FcmSender(FirebaseMessaging messaging) {
+        this.messaging = messaging;
+    }
+
+    @Override
+    public void send(List<Notification> batch) throws Exception {
+        for (int from = 0; from < batch.size(); from += MAX_BATCH) {
+            List<Message> messages = new ArrayList<>();
+            for (Notification n : batch.subList(from, Math.min(batch.size(), from + MAX_BATCH))) {
+                messages.add(toMessage(n));
+            }
+            BatchResponse response = messaging.sendEach(messages);
+            if (response.getFailureCount() > 0) {
+                LOG.warning(response.getFailureCount() + " of " + messages.size() + " notifications failed");
+            }
+        }
+    }
+
+    private Message toMessage(Notification n) {
+        // Data keys match what MyFirebaseMessagingService reads
+        Message.Builder builder = Message.builder()
+                .setTopic(n.topic)
+                .putData("title", n.getTitle())
+                .putData("message", n.lastText == null ? "" : n.lastText)
+                .putData("groupName", n.groupName)
+                .putData("count", Integer.toString(n.count))
+                .setAndroidConfig(AndroidConfig.builder()
+                        .setCollapseKey(n.topic)
+                        .setTtl(TTL_MILLIS)
+                        .build());
+        if (n.senderId != null) {
+            builder.putData("senderId", n.senderId);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.chatapp.dispatcher;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+// Used against the emulator, which has no FCM backend
+public class LoggingSender implements NotificationSender {
+    private static final Logger LOG = Logger.getLogger(LoggingSender.class.getName());
+
+    @Override
+    public void send(List<Notification> batch) {
+        for (Notification n : batch) {
+            LOG.info(n.topic + ": " + n.getTitle() + " - " + n.lastText);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.chatapp.dispatcher;
+
+// One coalesced notification for a topic: the newest message plus how many arrived in the window.
+// senderId is set only when one user sent all of them, so their own devices can skip it.
+public class Notification {
+    final String topic;
+    final String groupName;
+    final String senderId;
+    final String lastText;
+    final int count;
+
+    Notification(String topic, String groupName, String senderId, String lastText, int count) {
+        this.topic = topic;
+        this.groupName = groupName;
+        this.senderId = senderId;
+        this.lastText = lastText;
+        this.count = count;
+    }
+
+    public String getTitle() {
+        return count == 1
+                ? "New message in " + groupName
+                : count + " new messages in " + groupName;
+    }
+}
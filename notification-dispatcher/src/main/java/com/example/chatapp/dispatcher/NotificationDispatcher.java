@@ -0,0 +1,243 @@
+package com.example.chatapp.dispatcher;
+
+import com.example.chatapp.model.ChatMessage;
+import com.example.chatapp.model.DataLayout;
+import com.example.chatapp.model.MessageCodec;
+import com.example.chatapp.model.SenderDictionary;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+import com.google.firebase.messaging.FirebaseMessaging;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+// Watches every group for new messages and fans out coalesced topic
+// notifications. Replaces the per-message upstream send from the app.
+// Each group is followed through its day buckets from the day the
+// dispatcher started, in whichever shard holds it.
+//
+//   FIREBASE_DATABASE_URL=https://<project>.firebaseio.com
+//   FIREBASE_MESSAGE_SHARDS=https://a.firebaseio.com,... (optional, same list as the app's message_shard_urls)
+//   FIREBASE_DATABASE_EMULATOR_HOST=localhost:9000   (optional, logs instead of sending)
+//   DISPATCH_WINDOW_MS=5000                          (optional)
+public class NotificationDispatcher {
+    private static final Logger LOG = Logger.getLogger(NotificationDispatcher.class.getName());
+
+    private static final long DEFAULT_WINDOW_MS = 5000;
+    private static final long TICK_MS = 250;
+    private static final int DEDUPE_CAPACITY = 100_000;
+
+    private final DatabaseReference root;
+    // Message shards; empty when messages live next to the groups
+    private final List<FirebaseDatabase> shards;
+    private final Coalescer coalescer;
+    private final Set<String> watchedGroups = new HashSet<>();
+    // Only messages pushed after this key are new to the dispatcher
+    private final String startKey;
+
+    public NotificationDispatcher(DatabaseReference root, List<FirebaseDatabase> shards, Coalescer coalescer) {
+        this.root = root;
+        this.shards = shards;
+        this.coalescer = coalescer;
+        this.startKey = root.push().getKey();
+    }
+
+    public void start(ScheduledExecutorService scheduler) {
+        root.child(DataLayout.GROUPS).addChildEventListener(new ChildEventListener() {
+            @Override
+            public void onChildAdded(DataSnapshot snapshot, String previousChildName) {
+                String groupName = snapshot.child(DataLayout.META).child("groupName").getValue(String.class);
+                watch(snapshot.getKey(), groupName == null ? snapshot.getKey() : groupName);
+            }
+
+            @Override
+            public void onChildChanged(DataSnapshot snapshot, String previousChildName) {
+
+            }
+
+            @Override
+            public void onChildRemoved(DataSnapshot snapshot) {
+
+            }
+
+            @Override
+            public void onChildMoved(DataSnapshot snapshot, String previousChildName) {
+
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                LOG.warning("Groups listener cancelled: " + error.getMessage());
+            }
+        });
+
+        scheduler.scheduleWithFixedDelay(() -> coalescer.flushDue(System.currentTimeMillis()),
+                TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void watch(String groupId, String groupName) {
+        if (!watchedGroups.add(groupId)) {
+            return;
+        }
+        DatabaseReference shard = shards.isEmpty()
+                ? root
+                : shards.get(DataLayout.shardOf(groupId, shards.size())).getReference();
+        DatabaseReference messages = shard.child(DataLayout.MESSAGES).child(groupId);
+
+        // Messages may name their sender by index; the dictionary is only appended to,
+        // and entries are written before the messages that use them
+        AtomicReference<SenderDictionary> senders = new AtomicReference<>(new SenderDictionary());
+        shard.child(DataLayout.SENDER_DICTIONARY).child(groupId).addValueEventListener(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot snapshot) {
+                List<String> uids = new ArrayList<>();
+                for (DataSnapshot child : snapshot.getChildren()) {
+                    uids.add(child.getValue(String.class));
+                }
+                senders.set(new SenderDictionary(uids));
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                LOG.warning("Sender dictionary listener for " + groupName + " cancelled: " + error.getMessage());
+            }
+        });
+
+        ChildEventListener messageListener = new ChildEventListener() {
+            @Override
+            public void onChildAdded(DataSnapshot snapshot, String previousChildName) {
+                ChatMessage message = MessageCodec.decode(snapshot.getKey(), snapshot.getValue(), senders.get());
+                if (message == null) {
+                    return;
+                }
+                coalescer.offer(groupName, snapshot.getKey(), message.getSenderId(), message.getText(),
+                        System.currentTimeMillis());
+            }
+
+            @Override
+            public void onChildChanged(DataSnapshot snapshot, String previousChildName) {
+
+            }
+
+            @Override
+            public void onChildRemoved(DataSnapshot snapshot) {
+
+            }
+
+            @Override
+            public void onChildMoved(DataSnapshot snapshot, String previousChildName) {
+
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                LOG.warning("Listener for " + groupName + " cancelled: " + error.getMessage());
+            }
+        };
+
+        // Push keys order across days too, so startKey works as the lower bound in every bucket.
+        // Only the newest day stays followed: once the next bucket shows up, the previous
+        // day's listener is dropped as soon as everything already in that day was delivered.
+        shard.child(DataLayout.MESSAGE_BUCKETS).child(groupId).orderByKey().startAt(DataLayout.bucketOf(startKey))
+                .addChildEventListener(new ChildEventListener() {
+                    private Query currentDay;
+
+                    @Override
+                    public void onChildAdded(DataSnapshot snapshot, String previousChildName) {
+                        Query day = messages.child(snapshot.getKey()).orderByKey().startAt(startKey);
+                        day.addChildEventListener(messageListener);
+                        if (currentDay != null) {
+                            drainAndStop(currentDay, messageListener);
+                        }
+                        currentDay = day;
+                    }
+
+                    @Override
+                    public void onChildChanged(DataSnapshot snapshot, String previousChildName) {
+
+                    }
+
+                    @Override
+                    public void onChildRemoved(DataSnapshot snapshot) {
+
+                    }
+
+                    @Override
+                    public void onChildMoved(DataSnapshot snapshot, String previousChildName) {
+
+                    }
+
+                    @Override
+                    public void onCancelled(DatabaseError error) {
+                        LOG.warning("Bucket listener for " + groupName + " cancelled: " + error.getMessage());
+                    }
+                });
+    }
+
+    // A value listener on the same query fires once the query's data is synced,
+    // which is after the child listener got every message already in the day
+    private static void drainAndStop(Query day, ChildEventListener messageListener) {
+        day.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot snapshot) {
+                day.removeEventListener(messageListener);
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                day.removeEventListener(messageListener);
+            }
+        });
+    }
+
+    public static void main(String[] args) throws Exception {
+        String databaseUrl = System.getenv("FIREBASE_DATABASE_URL");
+        boolean emulator = System.getenv("FIREBASE_DATABASE_EMULATOR_HOST") != null;
+        String shardUrls = System.getenv("FIREBASE_MESSAGE_SHARDS");
+        String window = System.getenv("DISPATCH_WINDOW_MS");
+        long windowMillis = window == null ? DEFAULT_WINDOW_MS : Long.parseLong(window);
+
+        GoogleCredentials credentials = emulator
+                ? GoogleCredentials.create(new AccessToken("owner", new Date(Long.MAX_VALUE)))
+                : GoogleCredentials.getApplicationDefault();
+        FirebaseApp.initializeApp(FirebaseOptions.builder()
+                .setCredentials(credentials)
+                .setDatabaseUrl(databaseUrl)
+                .build());
+
+        NotificationSender sender = emulator
+                ? new LoggingSender()
+                : new FcmSender(FirebaseMessaging.getInstance());
+        Coalescer coalescer = new Coalescer(windowMillis, DEDUPE_CAPACITY, sender);
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        List<FirebaseDatabase> shards = new ArrayList<>();
+        if (shardUrls != null && !shardUrls.isEmpty()) {
+            for (String url : shardUrls.split(",")) {
+                shards.add(FirebaseDatabase.getInstance(url.trim()));
+            }
+        }
+        new NotificationDispatcher(FirebaseDatabase.getInstance().getReference(), shards, coalescer).start(scheduler);
+        LOG.info("Dispatching with a " + windowMillis + " ms window" + (emulator ? " (emulator)" : ""));
+
+        // Listener and scheduler threads keep the process alive
+        Thread.currentThread().join();
+    }
+}
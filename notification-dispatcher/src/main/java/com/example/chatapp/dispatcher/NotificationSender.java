@@ -0,0 +1,7 @@
+package com.example.chatapp.dispatcher;
+
+import java.util.List;
+
+public interface NotificationSender {
+    void send(List<Notification> batch) throws Exception;
+}
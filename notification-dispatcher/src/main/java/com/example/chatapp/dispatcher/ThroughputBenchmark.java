@@ -0,0 +1,62 @@
+package com.example.chatapp.dispatcher;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Measures how many incoming messages per second the coalescer can fan out,
+// with a sender that only counts. Also reports the coalescing ratio.
+public class ThroughputBenchmark {
+    private static final int GROUPS = 1_000;
+    private static final int MESSAGES = 5_000_000;
+    private static final int DUPLICATE_EVERY = 10;
+    private static final long WINDOW_MS = 5000;
+    // Simulated message arrival rate, used to advance the clock
+    private static final long MESSAGES_PER_SIMULATED_MS = 100;
+
+    public static void main(String[] args) {
+        AtomicLong sent = new AtomicLong();
+        AtomicLong batches = new AtomicLong();
+        NotificationSender counting = (List<Notification> batch) -> {
+            sent.addAndGet(batch.size());
+            batches.incrementAndGet();
+        };
+
+        String[] groups = new String[GROUPS];
+        for (int i = 0; i < GROUPS; i++) {
+            groups[i] = "group " + i;
+        }
+
+        // Warm-up run, then the measured one
+        run(new Coalescer(WINDOW_MS, 100_000, counting), groups, MESSAGES / 10);
+        sent.set(0);
+        batches.set(0);
+
+        Coalescer coalescer = new Coalescer(WINDOW_MS, 100_000, counting);
+        long start = System.nanoTime();
+        long accepted = run(coalescer, groups, MESSAGES);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("messages in:        %d (%d duplicates dropped)%n", MESSAGES, MESSAGES - accepted);
+        System.out.printf("notifications out:  %d in %d batches%n", sent.get(), batches.get());
+        System.out.printf("coalescing ratio:   %.1f messages per notification%n", (double) accepted / sent.get());
+        System.out.printf("throughput:         %.0f messages/sec%n", MESSAGES / seconds);
+    }
+
+    private static long run(Coalescer coalescer, String[] groups, int messages) {
+        long accepted = 0;
+        long now = 0;
+        for (int i = 0; i < messages; i++) {
+            // Every DUPLICATE_EVERY-th message repeats the previous push key
+            String key = "k" + (i % DUPLICATE_EVERY == 0 && i > 0 ? i - 1 : i);
+            if (coalescer.offer(groups[i % groups.length], key, "sender", "hello", now)) {
+                accepted++;
+            }
+            if (i % MESSAGES_PER_SIMULATED_MS == 0) {
+                now++;
+                coalescer.flushDue(now);
+            }
+        }
+        coalescer.flushDue(Long.MAX_VALUE);
+        return accepted;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.chatapp.dispatcher;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CoalescerTest {
+    private static final long WINDOW_MS = 2000;
+    private static final int DEDUPE_CAPACITY = 3;
+
+    // The clock Coalescer is given, advanced by hand
+    private long now;
+    private List<List<Notification>> batches;
+    private Coalescer coalescer;
+
+    @Before
+    public void setUp() {
+        now = 1_700_000_000_000L;
+        batches = new ArrayList<>();
+        coalescer = new Coalescer(WINDOW_MS, DEDUPE_CAPACITY, batches::add);
+    }
+
+    @Test
+    public void repeatedPushKey_isDropped() {
+        assertTrue(coalescer.offer("general", "-K1", "alice", "hi", now));
+        assertFalse(coalescer.offer("general", "-K1", "alice", "hi", now));
+
+        now += WINDOW_MS;
+        coalescer.flushDue(now);
+        assertEquals(1, batches.get(0).get(0).count);
+    }
+
+    @Test
+    public void dedupe_forgetsOldestKeysBeyondCapacity() {
+        for (int i = 1; i <= DEDUPE_CAPACITY; i++) {
+            assertTrue(coalescer.offer("general", "-K" + i, "alice", "m" + i, now));
+        }
+        assertTrue(coalescer.offer("general", "-K4", "alice", "m4", now));
+
+        // -K1 was evicted by -K4, the others are still known
+        assertTrue(coalescer.offer("general", "-K1", "alice", "m1", now));
+        assertFalse(coalescer.offer("general", "-K4", "alice", "m4", now));
+    }
+
+    @Test
+    public void window_holdsMessagesUntilItCloses() {
+        coalescer.offer("general", "-K1", "alice", "first", now);
+        now += WINDOW_MS - 1;
+        coalescer.offer("general", "-K2", "bob", "second", now);
+
+        assertEquals(0, coalescer.flushDue(now));
+        assertTrue(batches.isEmpty());
+
+        // The window runs from the first message, later ones do not extend it
+        now += 1;
+        assertEquals(1, coalescer.flushDue(now));
+        Notification notification = batches.get(0).get(0);
+        assertEquals(2, notification.count);
+        assertNull(notification.senderId);
+        assertEquals("second", notification.lastText);
+        assertEquals("2 new messages in general", notification.getTitle());
+        assertEquals(0, coalescer.pendingTopics());
+    }
+
+    @Test
+    public void oneSender_isKeptForTheWholeWindow() {
+        coalescer.offer("general", "-K1", "alice", "first", now);
+        coalescer.offer("general", "-K2", "alice", "second", now);
+        coalescer.offer("other", "-K3", "alice", "third", now);
+        coalescer.offer("other", "-K4", "bob", "fourth", now);
+        coalescer.offer("other", "-K5", "alice", "fifth", now);
+
+        now += WINDOW_MS;
+        assertEquals(2, coalescer.flushDue(now));
+        for (Notification notification : batches.get(0)) {
+            if (notification.groupName.equals("general")) {
+                assertEquals("alice", notification.senderId);
+            } else {
+                assertNull(notification.senderId);
+            }
+        }
+    }
+
+    @Test
+    public void messageAfterFlush_opensNewWindow() {
+        coalescer.offer("general", "-K1", "alice", "first", now);
+        now += WINDOW_MS;
+        coalescer.flushDue(now);
+
+        coalescer.offer("general", "-K2", "alice", "second", now);
+        assertEquals(0, coalescer.flushDue(now + WINDOW_MS - 1));
+        assertEquals(1, coalescer.flushDue(now + WINDOW_MS));
+        assertEquals(2, batches.size());
+        assertEquals(1, batches.get(1).get(0).count);
+    }
+
+    @Test
+    public void dueTopics_goOutInOneBatch() {
+        coalescer.offer("general", "-K1", "alice", "a", now);
+        coalescer.offer("random", "-K2", "bob", "b", now);
+        now += WINDOW_MS / 2;
+        coalescer.offer("later", "-K3", "carol", "c", now);
+
+        now += WINDOW_MS / 2;
+        assertEquals(2, coalescer.flushDue(now));
+        assertEquals(1, batches.size());
+        List<String> topics = new ArrayList<>();
+        for (Notification notification : batches.get(0)) {
+            topics.add(notification.topic);
+        }
+        assertTrue(topics.contains(Coalescer.topicFor("general")));
+        assertTrue(topics.contains(Coalescer.topicFor("random")));
+        assertEquals(1, coalescer.pendingTopics());
+    }
+
+    @Test
+    public void namesOfOneGroup_shareATopic() {
+        coalescer.offer("General", "-K1", "alice", "a", now);
+        coalescer.offer(" general ", "-K2", "bob", "b", now);
+
+        assertEquals(1, coalescer.pendingTopics());
+    }
+
+    @Test
+    public void failedSend_doesNotKeepTheBatch() {
+        coalescer = new Coalescer(WINDOW_MS, DEDUPE_CAPACITY, batch -> {
+            throw new IllegalStateException("FCM unavailable");
+        });
+        coalescer.offer("general", "-K1", "alice", "a", now);
+
+        assertEquals(1, coalescer.flushDue(now + WINDOW_MS));
+        assertEquals(0, coalescer.pendingTopics());
+    }
+}